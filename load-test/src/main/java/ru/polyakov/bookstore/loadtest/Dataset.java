@@ -0,0 +1,149 @@
+package ru.polyakov.bookstore.loadtest;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Детерминированная модель синтетического набора данных, общая для генератора и нагрузочного теста.
+ * <p>
+ * Размеры категорий убывают по закону Ципфа: категория с номером 1 самая большая. Книги нумеруются
+ * подряд по категориям, названия уникальны, у автора в среднем {@link #BOOKS_PER_AUTHOR} книг.
+ * Частоты обращений тоже подчиняются закону Ципфа: к большим категориям обращаются чаще,
+ * а популярные книги разбросаны по всему диапазону id детерминированной перестановкой.
+ * <p>
+ * Параметры задаются системными свойствами: {@code categories}, {@code books}, {@code sizeSkew},
+ * {@code accessSkew}, {@code seed}. При одинаковых параметрах модель всегда одна и та же.
+ */
+final class Dataset {
+
+    static final int BOOKS_PER_AUTHOR = 20;
+
+    final int categories;
+    final long books;
+    final long seed;
+
+    private final long[] firstIds;
+    private final long authors;
+    private final long stride;
+    private final long offset;
+    private final ZipfSampler categoryAccess;
+    private final ZipfSampler bookAccess;
+
+    Dataset(int categories, long books, double sizeSkew, double accessSkew, long seed) {
+        if (categories < 1 || books < categories) {
+            throw new IllegalArgumentException("Need at least one category and one book per category");
+        }
+        this.categories = categories;
+        this.books = books;
+        this.seed = seed;
+        this.firstIds = firstIds(categories, books, sizeSkew);
+        this.authors = Math.max(1, books / BOOKS_PER_AUTHOR);
+        this.stride = coprimeStride(books);
+        this.offset = Math.floorMod(mix(seed), books);
+        this.categoryAccess = new ZipfSampler(categories, accessSkew);
+        this.bookAccess = new ZipfSampler(books, accessSkew);
+    }
+
+    static Dataset fromSystemProperties() {
+        return new Dataset(
+                Integer.getInteger("categories", 1_000),
+                Long.getLong("books", 1_000_000),
+                Double.parseDouble(System.getProperty("sizeSkew", "1.0")),
+                Double.parseDouble(System.getProperty("accessSkew", "0.99")),
+                Long.getLong("seed", 42));
+    }
+
+    /**
+     * Название категории по номеру от 0.
+     */
+    String categoryName(int category) {
+        return String.format("category-%05d", category + 1);
+    }
+
+    long firstId(int category) {
+        return firstIds[category];
+    }
+
+    long size(int category) {
+        return firstIds[category + 1] - firstIds[category];
+    }
+
+    int categoryOf(long id) {
+        int index = Arrays.binarySearch(firstIds, id);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    String bookName(long id) {
+        return "Книга " + id;
+    }
+
+    String bookAuthor(long id) {
+        return "Автор " + (Math.floorMod(mix(id ^ seed), authors) + 1);
+    }
+
+    /**
+     * Категория с учётом частоты обращений.
+     */
+    int randomCategory(RandomGenerator random) {
+        return (int) categoryAccess.sample(random) - 1;
+    }
+
+    /**
+     * Id книги с учётом частоты обращений.
+     */
+    long randomBookId(RandomGenerator random) {
+        long rank = bookAccess.sample(random);
+        return ((rank - 1) * stride + offset) % books + 1;
+    }
+
+    /**
+     * Категории получают по одной книге, остальные книги делятся пропорционально {@code 1 / rank^skew},
+     * остаток от округления достаётся первым категориям.
+     */
+    private static long[] firstIds(int categories, long books, double skew) {
+        double[] weights = new double[categories];
+        double total = 0;
+        for (int i = 0; i < categories; i++) {
+            weights[i] = Math.pow(i + 1, -skew);
+            total += weights[i];
+        }
+        long spare = books - categories;
+        long[] sizes = new long[categories];
+        long assigned = 0;
+        for (int i = 0; i < categories; i++) {
+            sizes[i] = 1 + (long) (spare * weights[i] / total);
+            assigned += sizes[i];
+        }
+        for (int i = 0; assigned < books; i = (i + 1) % categories, assigned++) {
+            sizes[i]++;
+        }
+        long[] firstIds = new long[categories + 1];
+        firstIds[0] = 1;
+        for (int i = 0; i < categories; i++) {
+            firstIds[i + 1] = firstIds[i] + sizes[i];
+        }
+        return firstIds;
+    }
+
+    private static long coprimeStride(long n) {
+        long stride = Math.max(1, (long) (n * 0.6180339887)) | 1;
+        while (gcd(stride, n) != 1) {
+            stride += 2;
+        }
+        return stride;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Финализатор SplitMix64.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.polyakov.bookstore.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Генератор синтетического набора данных по модели {@link Dataset}: пишет {@code category.csv},
+ * {@code book.csv} и {@code load.sql}, который загружает их командой COPY и сдвигает последовательности id.
+ * <p>
+ * Параметры модели задаются теми же свойствами, что и у нагрузочного теста, плюс {@code out} — каталог
+ * для файлов и {@code mount} — путь к этому каталогу внутри контейнера Postgres.
+ */
+public class DatasetGenerator {
+
+    public static void main(String[] args) throws IOException {
+        Dataset dataset = Dataset.fromSystemProperties();
+        Path out = Path.of(System.getProperty("out", "target/dataset"));
+        String mount = System.getProperty("mount", "/dataset");
+        Files.createDirectories(out);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(out.resolve("category.csv"), StandardCharsets.UTF_8)) {
+            for (int category = 0; category < dataset.categories; category++) {
+                writer.append(Integer.toString(category + 1)).append(',')
+                        .append(dataset.categoryName(category)).append('\n');
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(out.resolve("book.csv"), StandardCharsets.UTF_8)) {
+            for (int category = 0; category < dataset.categories; category++) {
+                long end = dataset.firstId(category) + dataset.size(category);
+                for (long id = dataset.firstId(category); id < end; id++) {
+                    writer.append(Long.toString(id)).append(',')
+                            .append(dataset.bookName(id)).append(',')
+                            .append(dataset.bookAuthor(id)).append(',')
+                            .append(Integer.toString(category + 1)).append('\n');
+                }
+            }
+        }
+        Files.writeString(out.resolve("load.sql"), """
+                \\set ON_ERROR_STOP on
+                BEGIN;
+                TRUNCATE book, category;
+                COPY category (id, name) FROM '%1$s/category.csv' WITH (FORMAT csv);
+                COPY book (id, name, author, category_id) FROM '%1$s/book.csv' WITH (FORMAT csv);
+                SELECT setval('category_seq', (SELECT MAX(id) FROM category) + 1, false);
+                SELECT setval('book_seq', (SELECT MAX(id) FROM book) + 1, false);
+                COMMIT;
+                ANALYZE category;
+                ANALYZE book;
+                """.formatted(mount), StandardCharsets.UTF_8);
+
+        System.out.printf("%d categories (largest %d books, smallest %d) and %d books written to %s%n",
+                dataset.categories, dataset.size(0), dataset.size(dataset.categories - 1), dataset.books,
+                out.toAbsolutePath());
+    }
+}
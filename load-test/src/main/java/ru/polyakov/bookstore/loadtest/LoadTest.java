@@ -0,0 +1,136 @@
+package ru.polyakov.bookstore.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест со смешанной нагрузкой {@link Workload} по модели данных {@link Dataset}.
+ * <p>
+ * Если задан {@code rate}, запросы отправляются по расписанию с постоянной частотой независимо от ответов
+ * (открытая модель), и задержки считаются от запланированного момента. Иначе {@code concurrency} клиентов
+ * без пауз отправляют запросы друг за другом (закрытая модель), что годится для сравнения пропускной
+ * способности, но не для задержек под заданной нагрузкой.
+ * <p>
+ * Параметры задаются системными свойствами: {@code baseUrl}, {@code rate}, {@code maxInFlight},
+ * {@code concurrency}, {@code duration}, {@code warmup}, {@code mix}, {@code label}, {@code histograms}
+ * и параметры модели данных.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("baseUrl", "http://localhost:8080/api/v1");
+        Integer rate = Integer.getInteger("rate");
+        int maxInFlight = Integer.getInteger("maxInFlight", 10_000);
+        int concurrency = Integer.getInteger("concurrency", 200);
+        Duration duration = Duration.parse(System.getProperty("duration", "PT60S"));
+        Duration warmup = Duration.parse(System.getProperty("warmup", "PT10S"));
+        String label = System.getProperty("label", "default");
+        String histograms = System.getProperty("histograms");
+
+        Dataset dataset = Dataset.fromSystemProperties();
+        Workload workload = new Workload(dataset, baseUrl, Operation.parseMix(System.getProperty("mix")));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+        SplittableRandom random = new SplittableRandom(dataset.seed);
+
+        Report report = new Report();
+        if (rate != null) {
+            runOpen(client, workload, random, rate, maxInFlight, warmup, new Report());
+            runOpen(client, workload, random, rate, maxInFlight, duration, report);
+        } else {
+            runClosed(client, workload, random, concurrency, warmup, new Report());
+            runClosed(client, workload, random, concurrency, duration, report);
+        }
+        report.print(label, duration);
+        if (histograms != null) {
+            report.writeHistograms(Path.of(histograms), label);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Открытая модель: один поток отправляет запросы асинхронно по расписанию с шагом {@code 1 / rate}.
+     * Если ответов ждут уже {@code maxInFlight} запросов, отправка ждёт, но время ответа всё равно
+     * отсчитывается от запланированного момента.
+     */
+    private static void runOpen(HttpClient client, Workload workload, SplittableRandom random, int rate,
+                                int maxInFlight, Duration duration, Report report) throws InterruptedException {
+        double intervalNanos = 1_000_000_000.0 / rate;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) {
+                break;
+            }
+            for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+            Workload.Call call = workload.next(random);
+            long sent = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> response = client.sendAsync(call.request(), call.bodyHandler());
+            response.whenComplete((result, error) -> {
+                long now = System.nanoTime();
+                int status = error != null ? -1 : result.statusCode();
+                report.record(call.operation(), now - intended, now - sent, status);
+                if (error == null) {
+                    workload.completed(call, status, result.body());
+                }
+                inFlight.release();
+            });
+        }
+        if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+            System.err.println("Some requests did not complete within a minute after the run");
+        }
+    }
+
+    /**
+     * Закрытая модель: {@code concurrency} потоков отправляют следующий запрос сразу после ответа на предыдущий.
+     */
+    private static void runClosed(HttpClient client, Workload workload, SplittableRandom random, int concurrency,
+                                  Duration duration, Report report) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            SplittableRandom workerRandom = random.split();
+            futures.add(workers.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    Workload.Call call = workload.next(workerRandom);
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(call.request(), call.bodyHandler());
+                        long latency = System.nanoTime() - started;
+                        report.record(call.operation(), latency, latency, response.statusCode());
+                        workload.completed(call, response.statusCode(), response.body());
+                    } catch (Exception e) {
+                        long latency = System.nanoTime() - started;
+                        report.record(call.operation(), latency, latency, -1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.polyakov.bookstore.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Операции нагрузки, по одной на эндпоинт {@code BookController}. Имена совпадают с методами контроллера.
+ */
+enum Operation {
+
+    FIND_BY_ID("findById", 35),
+    FIND_BY_AUTHOR_AND_NAME("findByAuthorAndName", 15),
+    FIND_ALL_BY_ID("findAllById", 5),
+    FIND_ALL_BY_NAME_AND_AUTHOR("findAllByNameAndAuthor", 5),
+    FIND_BY_CATEGORY("findByCategory", 30),
+    EXPORT_ALL("exportAll", 0),
+    SAVE("save", 4),
+    SAVE_ALL("saveAll", 1),
+    UPDATE_BY_ID("updateById", 3),
+    DELETE_BY_ID("deleteById", 2);
+
+    final String label;
+    final int defaultWeight;
+
+    Operation(String label, int defaultWeight) {
+        this.label = label;
+        this.defaultWeight = defaultWeight;
+    }
+
+    /**
+     * Веса операций из строки вида {@code findById:50,findByCategory:50}. Пустая строка даёт веса по умолчанию,
+     * а операции, не упомянутые в непустой строке, не выполняются.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        if (mix == null || mix.isBlank()) {
+            for (Operation operation : values()) {
+                weights.put(operation, operation.defaultWeight);
+            }
+            return weights;
+        }
+        for (String part : mix.split(",")) {
+            String[] labelAndWeight = part.trim().split(":");
+            weights.put(byLabel(labelAndWeight[0].trim()), Integer.parseInt(labelAndWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Operation byLabel(String label) {
+        for (Operation operation : values()) {
+            if (operation.label.toLowerCase(Locale.ROOT).equals(label.toLowerCase(Locale.ROOT))) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + label);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.polyakov.bookstore.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограммы задержек по операциям.
+ * <p>
+ * Время ответа отсчитывается от запланированного момента запроса, а не от фактической отправки,
+ * поэтому задержка очереди на стороне теста тоже попадает в результат (поправка на coordinated omission).
+ * Время обслуживания от фактической отправки хранится отдельно для сравнения.
+ */
+final class Report {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    Report() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    void record(Operation operation, long responseNanos, long serviceNanos, int status) {
+        Stats operationStats = stats.get(operation);
+        operationStats.response.recordValue(Math.max(0, responseNanos));
+        operationStats.service.recordValue(Math.max(0, serviceNanos));
+        if (status < 0 || status >= 500) {
+            operationStats.errors.increment();
+        } else if (status >= 400) {
+            operationStats.rejected.increment();
+        }
+    }
+
+    void print(String label, Duration duration) {
+        Histogram total = new Histogram(3);
+        Histogram totalService = new Histogram(3);
+        long errors = 0;
+        long rejected = 0;
+        System.out.printf("%-24s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "4xx", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            Histogram response = operationStats.response;
+            if (response.getTotalCount() == 0) {
+                continue;
+            }
+            total.add(response);
+            totalService.add(operationStats.service);
+            errors += operationStats.errors.sum();
+            rejected += operationStats.rejected.sum();
+            System.out.printf("%-24s %10d %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey().label, response.getTotalCount(), operationStats.errors.sum(),
+                    operationStats.rejected.sum(), response.getTotalCount() / (double) duration.toSeconds(),
+                    millis(response, 50), millis(response, 99), millis(response, 99.9),
+                    response.getMaxValue() / NANOS_PER_MILLI);
+        }
+        System.out.printf("%s: %d requests, %d errors, %d rejected, %.1f req/s, "
+                        + "p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms "
+                        + "(service time p99 %.2f ms, p99.9 %.2f ms)%n",
+                label, total.getTotalCount(), errors, rejected, total.getTotalCount() / (double) duration.toSeconds(),
+                millis(total, 50), millis(total, 99), millis(total, 99.9), total.getMaxValue() / NANOS_PER_MILLI,
+                millis(totalService, 99), millis(totalService, 99.9));
+    }
+
+    /**
+     * Пишет распределения времени ответа в формате HdrHistogram ({@code .hgrm}), по файлу на операцию.
+     */
+    void writeHistograms(Path directory, String label) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Histogram response = entry.getValue().response;
+            if (response.getTotalCount() == 0) {
+                continue;
+            }
+            Path file = directory.resolve(label + "-" + entry.getKey().label + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+                response.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    private static final class Stats {
+
+        private final Histogram response = new ConcurrentHistogram(3);
+        private final Histogram service = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+}
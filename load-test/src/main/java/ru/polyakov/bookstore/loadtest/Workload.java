@@ -0,0 +1,186 @@
+package ru.polyakov.bookstore.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Смешанная нагрузка по всем эндпоинтам {@code BookController} поверх модели {@link Dataset}.
+ * <p>
+ * Чтение обращается к книгам и категориям набора с учётом их популярности. Запись создаёт собственные
+ * книги теста, а изменяет и удаляет только их, поэтому набор данных между прогонами не меняется.
+ * Если своих книг ещё нет, изменение и удаление заменяются созданием.
+ */
+final class Workload {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGES = 10;
+    private static final int LOOKUP_SIZE = 10;
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_CREATED = 100_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final Dataset dataset;
+    private final String baseUrl;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Deque<Long> created = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    Workload(Dataset dataset, String baseUrl, Map<Operation, Integer> weights) {
+        this.dataset = dataset;
+        this.baseUrl = baseUrl;
+        this.operations = weights.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .toArray(Operation[]::new);
+        if (operations.length == 0) {
+            throw new IllegalArgumentException("Workload mix has no operations");
+        }
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    record Call(Operation operation, HttpRequest request) {
+
+        /**
+         * Тело ответа нужно только для id созданных книг.
+         */
+        HttpResponse.BodyHandler<String> bodyHandler() {
+            return operation == Operation.SAVE || operation == Operation.SAVE_ALL
+                    ? HttpResponse.BodyHandlers.ofString()
+                    : HttpResponse.BodyHandlers.replacing(null);
+        }
+    }
+
+    Call next(RandomGenerator random) {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= point) {
+            index++;
+        }
+        return call(operations[index], random);
+    }
+
+    /**
+     * Запоминает id созданных книг из ответа на создание.
+     */
+    void completed(Call call, int status, String body) {
+        if (status != 201 || body == null) {
+            return;
+        }
+        Matcher matcher = ID.matcher(body);
+        while (matcher.find() && createdCount.get() < MAX_CREATED) {
+            created.addLast(Long.parseLong(matcher.group(1)));
+            createdCount.incrementAndGet();
+        }
+    }
+
+    private Call call(Operation operation, RandomGenerator random) {
+        return switch (operation) {
+            case FIND_BY_ID -> get(operation, "/book/" + dataset.randomBookId(random));
+            case FIND_BY_AUTHOR_AND_NAME -> {
+                long id = dataset.randomBookId(random);
+                yield get(operation, "/book?name=" + encode(dataset.bookName(id))
+                        + "&author=" + encode(dataset.bookAuthor(id)));
+            }
+            case FIND_ALL_BY_ID -> get(operation, "/book?ids=" + LongStream.range(0, LOOKUP_SIZE)
+                    .mapToObj(i -> Long.toString(dataset.randomBookId(random)))
+                    .collect(Collectors.joining(",")));
+            case FIND_ALL_BY_NAME_AND_AUTHOR -> send(operation, "POST", "/books:lookup", "{\"books\":["
+                    + LongStream.range(0, LOOKUP_SIZE)
+                    .map(i -> dataset.randomBookId(random))
+                    .mapToObj(id -> "{\"name\":" + json(dataset.bookName(id))
+                            + ",\"author\":" + json(dataset.bookAuthor(id)) + "}")
+                    .collect(Collectors.joining(",")) + "]}");
+            case FIND_BY_CATEGORY -> categoryPage(operation, random);
+            case EXPORT_ALL -> get(operation, "/book/export");
+            case SAVE -> send(operation, "POST", "/book", newBook(random));
+            case SAVE_ALL -> send(operation, "POST", "/books:batch", "{\"books\":["
+                    + LongStream.range(0, BATCH_SIZE)
+                    .mapToObj(i -> newBook(random))
+                    .collect(Collectors.joining(",")) + "]}");
+            case UPDATE_BY_ID -> {
+                Long id = created.pollFirst();
+                if (id == null) {
+                    yield call(Operation.SAVE, random);
+                }
+                created.addLast(id);
+                yield send(operation, "PUT", "/book/" + id, "{\"name\":" + json(newName()) + "}");
+            }
+            case DELETE_BY_ID -> {
+                Long id = created.pollFirst();
+                if (id == null) {
+                    yield call(Operation.SAVE, random);
+                }
+                createdCount.decrementAndGet();
+                yield send(operation, "DELETE", "/book/" + id, null);
+            }
+        };
+    }
+
+    /**
+     * Чаще первая страница категории, иногда одна из следующих.
+     */
+    private Call categoryPage(Operation operation, RandomGenerator random) {
+        int category = dataset.randomCategory(random);
+        long cursor = 0;
+        long pages = Math.min(DEEP_PAGES, dataset.size(category) / PAGE_SIZE);
+        if (pages > 1 && random.nextInt(5) == 0) {
+            cursor = dataset.firstId(category) - 1 + random.nextLong(1, pages) * PAGE_SIZE;
+        }
+        return get(operation, "/" + dataset.categoryName(category) + "/book?cursor=" + cursor + "&size=" + PAGE_SIZE);
+    }
+
+    private String newBook(RandomGenerator random) {
+        return "{\"name\":" + json(newName()) + ",\"author\":\"Нагрузочный тест\",\"categoryName\":"
+                + json(dataset.categoryName(dataset.randomCategory(random))) + "}";
+    }
+
+    private String newName() {
+        return "Нагрузка " + runId + "-" + sequence.incrementAndGet();
+    }
+
+    private Call get(Operation operation, String path) {
+        return new Call(operation, HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT).GET().build());
+    }
+
+    private Call send(Operation operation, String method, String path, String body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT);
+        if (body == null) {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+        }
+        return new Call(operation, request.build());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String json(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,54 @@
+package ru.polyakov.bookstore.benchmark;
+
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.Category;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные для бенчмарков, похожие на реальные: кириллица в названиях и авторах.
+ */
+final class BenchmarkData {
+
+    static final Category CATEGORY = Category.builder().id(7L).name("Фантастика").build();
+    static final Instant UPDATED_AT = Instant.parse("2024-05-01T12:00:00.123456Z");
+
+    private BenchmarkData() {}
+
+    static Book book(long id) {
+        return Book.builder()
+                .id(id)
+                .name("Трудно быть богом, том " + id)
+                .author("Аркадий и Борис Стругацкие")
+                .category(CATEGORY)
+                .version(3L)
+                .updatedAt(UPDATED_AT)
+                .build();
+    }
+
+    static List<Book> books(int size) {
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            books.add(book(i));
+        }
+        return books;
+    }
+
+    static BookResponse bookResponse(long id) {
+        Book book = book(id);
+        return new BookResponse(book.getId(), book.getName(), book.getAuthor(), CATEGORY.getName(),
+                book.getVersion(), book.getUpdatedAt());
+    }
+
+    static BooksResponse booksResponse(int size) {
+        List<BookShortResponse> books = books(size).stream()
+                .map(book -> new BookShortResponse(book.getId(), book.getName(), book.getAuthor()))
+                .toList();
+        return new BooksResponse(new ArrayList<>(books), (long) size);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.polyakov.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.polyakov.bookstore.cache.CacheKeys;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheKeyBenchmark {
+
+    private String name = "Трудно быть богом";
+    private String author = "Аркадий и Борис Стругацкие";
+    private String categoryName = "Фантастика";
+    private long cursor = 1240;
+
+    @Benchmark
+    public String nameAndAuthor() {
+        return CacheKeys.nameAndAuthor(name, author);
+    }
+
+    @Benchmark
+    public String categoryPage() {
+        return CacheKeys.categoryPage(categoryName, 3, 17, cursor, 20);
+    }
+}
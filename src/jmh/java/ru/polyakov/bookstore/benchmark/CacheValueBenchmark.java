@@ -0,0 +1,75 @@
+package ru.polyakov.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import ru.polyakov.bookstore.cache.CacheValueSerializer;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись и чтение значений кэша в компактном формате в сравнении с прежней JDK-сериализацией.
+ * Страница из 200 книг больше порога и сжимается.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheValueBenchmark {
+
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({"compact", "jdk"})
+    private String format;
+
+    @Param({"20", "200"})
+    private int pageSize;
+
+    private RedisSerializer<Object> serializer;
+    private BookResponse book;
+    private BooksResponse books;
+    private byte[] bookBytes;
+    private byte[] booksBytes;
+
+    @Setup
+    public void setUp() {
+        serializer = "jdk".equals(format) ? RedisSerializer.java() : new CacheValueSerializer(COMPRESSION_THRESHOLD);
+        book = BenchmarkData.bookResponse(1);
+        books = BenchmarkData.booksResponse(pageSize);
+        bookBytes = serializer.serialize(book);
+        booksBytes = serializer.serialize(books);
+    }
+
+    @Benchmark
+    public byte[] serializeBook() {
+        return serializer.serialize(book);
+    }
+
+    @Benchmark
+    public Object deserializeBook() {
+        return serializer.deserialize(bookBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeBooks() {
+        return serializer.serialize(books);
+    }
+
+    @Benchmark
+    public Object deserializeBooks() {
+        return serializer.deserialize(booksBytes);
+    }
+}
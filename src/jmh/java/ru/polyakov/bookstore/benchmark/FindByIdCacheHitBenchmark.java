@@ -0,0 +1,140 @@
+package ru.polyakov.bookstore.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheInvalidator;
+import ru.polyakov.bookstore.cache.TwoLevelCacheManager;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+import ru.polyakov.bookstore.controller.config.WarmUp;
+import ru.polyakov.bookstore.controller.impl.BookControllerImpl;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.mapper.BookMapperImpl;
+import ru.polyakov.bookstore.repository.BookRepository;
+import ru.polyakov.bookstore.repository.CategoryRepository;
+import ru.polyakov.bookstore.search.BookSearchIndex;
+import ru.polyakov.bookstore.service.BookService;
+import ru.polyakov.bookstore.service.BookServiceImpl;
+import ru.polyakov.bookstore.service.CacheWarmer;
+import ru.polyakov.bookstore.service.CategoryRegistry;
+import ru.polyakov.bookstore.service.EntityUpdaterImpl;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Полный путь {@code GET /book/{id}} при попадании в кэш: контроллер, учёт обращения для прогрева,
+ * прокси {@code @Cacheable} с вычислением ключа и кэш Caffeine вместо двухуровневого.
+ * База и Redis не участвуют, все книги загружены в кэш заранее.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindByIdCacheHitBenchmark {
+
+    private static final int BOOKS = 1024;
+
+    private AnnotationConfigApplicationContext context;
+    private BookControllerImpl controller;
+    private ObjectWriter writer;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        controller = context.getBean(BookControllerImpl.class);
+        writer = context.getBean(ObjectMapper.class).writerFor(BookResponse.class);
+        for (long id = 1; id <= BOOKS; id++) {
+            controller.findById(id);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<BookResponse> findById() {
+        return controller.findById(nextId());
+    }
+
+    @Benchmark
+    public byte[] findByIdToJson() throws JsonProcessingException {
+        return writer.writeValueAsBytes(controller.findById(nextId()).getBody());
+    }
+
+    private long nextId() {
+        next = next % BOOKS + 1;
+        return next;
+    }
+
+    @EnableCaching
+    @Configuration
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new CaffeineCacheManager("book");
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return Jackson2ObjectMapperBuilder.json().build();
+        }
+
+        @Bean
+        BookService bookService() {
+            BookRepository bookRepository = mock(BookRepository.class);
+            when(bookRepository.findResponseById(anyLong()))
+                    .thenAnswer(invocation -> Optional.of(BenchmarkData.bookResponse(invocation.getArgument(0))));
+            return new BookServiceImpl(bookRepository, mock(CategoryRepository.class),
+                    mock(TwoLevelCacheManager.class), new EntityUpdaterImpl(), mock(EntityManager.class),
+                    mock(CategoryRegistry.class), mock(CacheInvalidator.class), mock(CacheGenerations.class),
+                    mock(BookSearchIndex.class), mock(PlatformTransactionManager.class));
+        }
+
+        @Bean
+        CacheWarmer cacheWarmer(BookService bookService) {
+            return new CacheWarmer(bookService, mock(CategoryRegistry.class), mock(StringRedisTemplate.class),
+                    mock(TaskScheduler.class), new WarmUp());
+        }
+
+        @Bean
+        BookControllerImpl bookController(BookService bookService, ObjectMapper objectMapper,
+                                          CacheWarmer cacheWarmer) {
+            return new BookControllerImpl(bookService, new BookMapperImpl(), objectMapper, cacheWarmer);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.polyakov.bookstore.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов в JSON тем же образом, что и у конвертера Spring MVC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private ObjectWriter bookWriter;
+    private ObjectWriter booksWriter;
+    private BookResponse book;
+    private BooksResponse books;
+
+    @Setup
+    public void setUp() {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bookWriter = objectMapper.writerFor(BookResponse.class);
+        booksWriter = objectMapper.writerFor(BooksResponse.class);
+        book = BenchmarkData.bookResponse(1);
+        books = BenchmarkData.booksResponse(pageSize);
+    }
+
+    @Benchmark
+    public byte[] writeBook() throws JsonProcessingException {
+        return bookWriter.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] writeBooks() throws JsonProcessingException {
+        return booksWriter.writeValueAsBytes(books);
+    }
+}
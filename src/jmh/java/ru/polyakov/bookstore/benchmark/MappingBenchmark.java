@@ -0,0 +1,65 @@
+package ru.polyakov.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.mapper.BookMapper;
+import ru.polyakov.bookstore.mapper.BookMapperImpl;
+import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.service.EntityUpdater;
+import ru.polyakov.bookstore.service.EntityUpdaterImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private final BookMapper mapper = new BookMapperImpl();
+    private final EntityUpdater updater = new EntityUpdaterImpl();
+
+    private Book book;
+    private Book update;
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        book = BenchmarkData.book(1);
+        update = Book.builder().name("Понедельник начинается в субботу").build();
+        books = BenchmarkData.books(pageSize);
+    }
+
+    @Benchmark
+    public BookResponse toResponse() {
+        return mapper.toResponse(book);
+    }
+
+    @Benchmark
+    public BooksResponse toBooksResponse() {
+        return new BooksResponse(mapper.toBookResponseList(books), books.get(books.size() - 1).getId());
+    }
+
+    @Benchmark
+    public Book updateEntity() {
+        updater.update(book, update);
+        return book;
+    }
+}
@@ -0,0 +1,114 @@
+package ru.polyakov.bookstore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Счётчики поколений для страниц категорий: общий для каталога и свой у каждой категории.
+ * <p>
+ * Оба поколения входят в ключ страницы, поэтому инвалидация страниц сводится к одному INCR
+ * в {@link CacheInvalidator}: старые ключи больше не читаются и истекают по ttl кэша.
+ * Узлы держат поколения в памяти и сбрасывают их по сообщению в канал {@link #CHANNEL}.
+ * Ключи поколений хранятся без ttl, поэтому Redis не должен вытеснять их политикой allkeys-*.
+ */
+@Slf4j
+public class CacheGenerations implements MessageListener {
+
+    public static final String CHANNEL = "cache-generations";
+
+    /**
+     * Если операция затрагивает больше категорий, вместо их поколений увеличивается поколение каталога.
+     */
+    static final int CATALOG_BUMP_THRESHOLD = 16;
+
+    static final String CATALOG = "catalog";
+    private static final String KEY_PREFIX = "generation::";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, Long> local;
+
+    public CacheGenerations(StringRedisTemplate redisTemplate, Duration localTtl) {
+        this.redisTemplate = redisTemplate;
+        this.local = Caffeine.newBuilder().expireAfterWrite(localTtl).build();
+    }
+
+    public String categoryPageKey(String categoryName, long cursor, int size) {
+        long[] generations = generations(categoryName);
+        return CacheKeys.categoryPage(categoryName, generations[0], generations[1], cursor, size);
+    }
+
+    /**
+     * Ревизия страниц категории: поколения каталога и категории, которые входят в ключи её страниц.
+     * Меняется при каждой записи в категорию и читается без загрузки страницы.
+     */
+    public String categoryRevision(String categoryName) {
+        long[] generations = generations(categoryName);
+        return generations[0] + "." + generations[1];
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        local.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Поколения, которые нужно увеличить, чтобы инвалидировать страницы этих категорий.
+     */
+    Set<String> keysToBump(Collection<String> categoryNames) {
+        if (categoryNames.size() > CATALOG_BUMP_THRESHOLD) {
+            return Set.of(CATALOG);
+        }
+        return categoryNames.stream().map(CacheGenerations::categoryKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * Ключи Redis с поколениями каталога и категории, в этом порядке.
+     */
+    public static List<String> generationRedisKeys(String categoryName) {
+        return List.of(redisKey(CATALOG), redisKey(categoryKey(categoryName)));
+    }
+
+    public static long parse(String generation) {
+        return generation == null ? 0 : Long.parseLong(generation);
+    }
+
+    static String redisKey(String generationKey) {
+        return KEY_PREFIX + generationKey;
+    }
+
+    void invalidateLocal(Collection<String> generationKeys) {
+        local.invalidateAll(generationKeys);
+    }
+
+    /**
+     * Поколения каталога и категории, в этом порядке.
+     */
+    private long[] generations(String categoryName) {
+        String categoryKey = categoryKey(categoryName);
+        Long catalogGeneration = local.getIfPresent(CATALOG);
+        Long categoryGeneration = local.getIfPresent(categoryKey);
+        if (catalogGeneration == null || categoryGeneration == null) {
+            List<String> values = redisTemplate.opsForValue().multiGet(generationRedisKeys(categoryName));
+            catalogGeneration = parse(values.get(0));
+            categoryGeneration = parse(values.get(1));
+            local.put(CATALOG, catalogGeneration);
+            local.put(categoryKey, categoryGeneration);
+        }
+        return new long[]{catalogGeneration, categoryGeneration};
+    }
+
+    private static String categoryKey(String categoryName) {
+        return "category::" + categoryName;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.polyakov.bookstore.cache;
+
+import java.util.List;
+
+/**
+ * Сообщение об инвалидации локального кэша, рассылаемое всем узлам через Redis pub/sub.
+ * Если {@code keys} не заданы, кэш очищается целиком.
+ */
+public record CacheInvalidationMessage(String origin, String cacheName, List<String> keys) {
+}
@@ -0,0 +1,295 @@
+package ru.polyakov.bookstore.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+import ru.polyakov.bookstore.controller.config.ResponseCache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Собирает инвалидации кэшей за транзакцию и выполняет их после фиксации одним конвейером Redis:
+ * DEL ключей, INCR поколений и рассылка сообщений остальным узлам. Вместе со значениями
+ * удаляются их готовые тела, если включён кэш тел ответов.
+ * <p>
+ * При откате собранные инвалидации отбрасываются. Локальные кэши очищаются в потоке запроса и ещё раз
+ * после отправки пакета, а в Redis пакет отправляет отдельный ограниченный пул: в {@code afterCommit}
+ * соединение с базой ещё занято, поэтому запрос ждёт отправки не дольше {@code flush-wait}. Если Redis недоступен,
+ * пакет попадает в ограниченную очередь и повторяется в фоне. С репликами пакет
+ * повторяется ещё раз через {@code repeat-after}: промах между фиксацией и её применением
+ * на реплике мог снова положить в кэш старое значение.
+ */
+@Slf4j
+public class CacheInvalidator implements DisposableBean {
+
+    private final TwoLevelCacheManager cacheManager;
+    private final CacheGenerations generations;
+    private final RedisConnectionFactory connectionFactory;
+    private final CacheNames.Invalidation settings;
+    private final boolean responseCacheEnabled;
+    private final Duration repeatAfter;
+    private final BlockingQueue<Batch> retries;
+    private final ScheduledExecutorService retryExecutor;
+    private final ExecutorService flushExecutor;
+    private final Counter retried;
+    private final Counter dropped;
+
+    public CacheInvalidator(TwoLevelCacheManager cacheManager, CacheGenerations generations,
+                            RedisConnectionFactory connectionFactory, CacheNames cacheProperties,
+                            ResponseCache responseCache, Duration repeatAfter, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.generations = generations;
+        this.connectionFactory = connectionFactory;
+        this.settings = cacheProperties.getInvalidation();
+        this.responseCacheEnabled = responseCache.isEnabled();
+        this.repeatAfter = repeatAfter;
+        this.retries = new ArrayBlockingQueue<>(settings.getRetryQueueSize());
+        this.retried = Counter.builder("cache.invalidation.retried")
+                .description("Пакеты инвалидаций, повторённые после ошибки Redis")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("cache.invalidation.dropped")
+                .description("Пакеты инвалидаций, отброшенные после всех попыток или из-за переполнения очереди")
+                .register(meterRegistry);
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(daemon("cache-invalidation-retry"));
+        this.flushExecutor = new ThreadPoolExecutor(settings.getFlushThreads(), settings.getFlushThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getFlushQueueSize()),
+                daemon("cache-invalidation-flush"));
+        long interval = settings.getRetryInterval().toMillis();
+        retryExecutor.scheduleWithFixedDelay(this::retry, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void evict(String cacheName, Object key) {
+        evictAll(cacheName, List.of(key));
+    }
+
+    public void evictAll(String cacheName, Collection<?> keys) {
+        TwoLevelCache cache = cacheManager.getCache(cacheName);
+        collect(batch -> {
+            Set<String> pending = batch.keys.computeIfAbsent(cacheName, name -> new LinkedHashSet<>());
+            keys.forEach(key -> pending.add(cache.localKey(key)));
+            if (responseCacheEnabled) {
+                Set<String> bodies = batch.keys.computeIfAbsent(EncodedResponse.cacheName(cacheName),
+                        name -> new LinkedHashSet<>());
+                keys.forEach(key -> {
+                    bodies.add(EncodedResponse.key(cache.localKey(key), false));
+                    bodies.add(EncodedResponse.key(cache.localKey(key), true));
+                });
+            }
+        });
+    }
+
+    public void bumpCategories(Collection<String> categoryNames) {
+        collect(batch -> batch.generations.addAll(generations.keysToBump(categoryNames)));
+    }
+
+    @Override
+    public void destroy() {
+        retryExecutor.shutdownNow();
+        flushExecutor.shutdownNow();
+    }
+
+    /**
+     * Добавляет инвалидацию в пакет текущей транзакции. Вне транзакции она выполняется сразу.
+     */
+    private void collect(Consumer<Batch> invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Batch batch = new Batch();
+            invalidation.accept(batch);
+            submit(batch);
+            scheduleRepeat(batch);
+            return;
+        }
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(this);
+        if (batch == null) {
+            Batch created = new Batch();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(created);
+                    scheduleRepeat(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidator.this);
+                }
+            });
+            batch = created;
+        }
+        invalidation.accept(batch);
+    }
+
+    /**
+     * Очищает локальные кэши и передаёт пакет пулу отправки, дожидаясь его не дольше {@code flush-wait}.
+     */
+    private void submit(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        evictLocal(batch);
+        Future<?> flushed;
+        try {
+            flushed = flushExecutor.submit(() -> flushOrEnqueue(batch));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cache invalidation flush queue is full, {} will be retried", batch);
+            enqueue(batch);
+            return;
+        }
+        try {
+            flushed.get(settings.getFlushWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Invalidation {} is still being sent to Redis, continuing without it", batch);
+        } catch (ExecutionException e) {
+            log.warn("Failed to invalidate {} in Redis", batch, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Выполняет пакет в текущем потоке. Используется фоновыми потоками, которые не держат соединение с базой.
+     */
+    private void execute(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        evictLocal(batch);
+        flushOrEnqueue(batch);
+    }
+
+    private void evictLocal(Batch batch) {
+        batch.keys.forEach((cacheName, keys) -> {
+            TwoLevelCache cache = cacheManager.getCache(cacheName);
+            keys.forEach(cache::evictLocal);
+            cache.recordEvictions(keys.size());
+        });
+        generations.invalidateLocal(batch.generations);
+    }
+
+    /**
+     * Отправляет пакет в Redis и очищает локальные кэши ещё раз. Чтение на этом узле между первой
+     * очисткой и DEL могло вернуть в L1 старое значение из Redis, а своё сообщение об инвалидации
+     * узел пропускает, поэтому вторую очистку делает отправивший пакет поток.
+     */
+    private void flushOrEnqueue(Batch batch) {
+        try {
+            flush(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to invalidate {} in Redis, will retry", batch, e);
+            enqueue(batch);
+            return;
+        }
+        batch.keys.forEach((cacheName, keys) -> {
+            TwoLevelCache cache = cacheManager.getCache(cacheName);
+            keys.forEach(cache::evictLocal);
+        });
+        generations.invalidateLocal(batch.generations);
+    }
+
+    private void scheduleRepeat(Batch batch) {
+        long delay = repeatAfter.toMillis();
+        if (delay > 0 && !batch.isEmpty()) {
+            retryExecutor.schedule(() -> execute(batch.copy()), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Batch batch) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            List<byte[]> redisKeys = new ArrayList<>();
+            batch.keys.forEach((cacheName, keys) -> {
+                TwoLevelCache cache = cacheManager.getCache(cacheName);
+                keys.forEach(key -> redisKeys.add(cache.redisKey(key)));
+            });
+            if (!redisKeys.isEmpty()) {
+                connection.keyCommands().del(redisKeys.toArray(byte[][]::new));
+            }
+            batch.generations.forEach(key -> connection.stringCommands().incr(bytes(CacheGenerations.redisKey(key))));
+            batch.keys.forEach((cacheName, keys) -> connection.publish(
+                    bytes(TwoLevelCacheManager.INVALIDATION_CHANNEL),
+                    bytes(cacheManager.invalidationMessage(cacheName, List.copyOf(keys)))));
+            batch.generations.forEach(key -> connection.publish(bytes(CacheGenerations.CHANNEL), bytes(key)));
+            connection.closePipeline();
+        }
+    }
+
+    private void enqueue(Batch batch) {
+        if (++batch.attempts > settings.getMaxAttempts() || !retries.offer(batch)) {
+            dropped.increment();
+            log.error("Cache invalidation {} dropped, stale values stay until their ttl", batch);
+        }
+    }
+
+    private void retry() {
+        List<Batch> batches = new ArrayList<>();
+        retries.drainTo(batches);
+        for (Batch batch : batches) {
+            retried.increment();
+            execute(batch);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Batch {
+
+        private final Map<String, Set<String>> keys = new HashMap<>();
+        private final Set<String> generations = new HashSet<>();
+        private int attempts;
+
+        private Batch copy() {
+            Batch copy = new Batch();
+            copy.keys.putAll(keys);
+            copy.generations.addAll(generations);
+            return copy;
+        }
+
+        private boolean isEmpty() {
+            return keys.values().stream().allMatch(Set::isEmpty) && generations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "keys " + keys + ", generations " + generations;
+        }
+    }
+}
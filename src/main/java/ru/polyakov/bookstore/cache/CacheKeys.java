@@ -0,0 +1,20 @@
+package ru.polyakov.bookstore.cache;
+
+/**
+ * Составные ключи кэшей. Строковые части предваряются длиной, поэтому разные наборы частей
+ * не дают одинаковый ключ.
+ */
+public final class CacheKeys {
+
+    private CacheKeys() {}
+
+    public static String nameAndAuthor(String name, String author) {
+        return name.length() + ":" + name + ':' + author;
+    }
+
+    public static String categoryPage(String categoryName, long catalogGeneration, long categoryGeneration,
+                                      long cursor, int size) {
+        return categoryName.length() + ":" + categoryName + ':'
+                + catalogGeneration + '.' + categoryGeneration + ':' + cursor + ':' + size;
+    }
+}
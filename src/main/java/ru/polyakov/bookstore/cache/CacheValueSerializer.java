@@ -0,0 +1,283 @@
+package ru.polyakov.bookstore.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Компактный бинарный формат значений кэша.
+ * <p>
+ * Заголовок: магический байт, версия формата, тип значения и флаги. Далее поля значения:
+ * числа в varint, строки как длина и UTF-8. Значения больше порога сжимаются Deflate,
+ * кроме уже сжатых тел ответов.
+ * Типы без собственного кодека пишутся JDK-сериализацией под отдельным тегом.
+ * Записи в старом JDK-формате читаются как раньше, а нечитаемые считаются промахом.
+ */
+@Slf4j
+public class CacheValueSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 3;
+
+    static final byte TYPE_JDK = 0;
+    static final byte TYPE_BOOK = 1;
+    static final byte TYPE_BOOKS = 2;
+    static final byte TYPE_RESPONSE = 3;
+
+    static final byte FLAG_DEFLATE = 1;
+
+    private static final int HEADER_SIZE = 4;
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+
+    private final RedisSerializer<Object> jdkSerializer = RedisSerializer.java();
+    private final int compressionThreshold;
+
+    public CacheValueSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            byte type = writePayload(value, payload);
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream(HEADER_SIZE + payload.size());
+            boolean compress = payload.size() > compressionThreshold && !isCompressedResponse(value);
+            result.write(MAGIC);
+            result.write(VERSION);
+            result.write(type);
+            result.write(compress ? FLAG_DEFLATE : 0);
+            if (compress) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (OutputStream out = new DeflaterOutputStream(result, deflater)) {
+                    payload.writeTo(out);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                payload.writeTo(result);
+            }
+            return result.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize cache value " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return readLegacy(bytes);
+        }
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC || bytes[1] != VERSION) {
+            log.debug("Cache value of unknown format or version is treated as a miss");
+            return null;
+        }
+        try (InputStream payload = payloadStream(bytes)) {
+            DataInputStream in = new DataInputStream(payload);
+            return switch (bytes[2]) {
+                case TYPE_BOOK -> readBook(in);
+                case TYPE_BOOKS -> readBooks(in);
+                case TYPE_RESPONSE -> readResponse(in);
+                case TYPE_JDK -> jdkSerializer.deserialize(in.readAllBytes());
+                default -> null;
+            };
+        } catch (IOException | SerializationException e) {
+            log.warn("Unreadable cache value is treated as a miss", e);
+            return null;
+        }
+    }
+
+    private byte writePayload(Object value, ByteArrayOutputStream payload) throws IOException {
+        DataOutputStream out = new DataOutputStream(payload);
+        if (value instanceof BookResponse book) {
+            writeBook(book, out);
+            return TYPE_BOOK;
+        }
+        if (value instanceof BooksResponse books) {
+            writeBooks(books, out);
+            return TYPE_BOOKS;
+        }
+        if (value instanceof EncodedResponse response) {
+            writeResponse(response, out);
+            return TYPE_RESPONSE;
+        }
+        out.write(jdkSerializer.serialize(value));
+        return TYPE_JDK;
+    }
+
+    /**
+     * Сжатое тело распаковывается целиком: побайтовое чтение varint прямо из потока Inflater
+     * обходится в разы дороже самой распаковки.
+     */
+    private InputStream payloadStream(byte[] bytes) throws IOException {
+        InputStream raw = new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        if ((bytes[3] & FLAG_DEFLATE) == 0) {
+            return raw;
+        }
+        Inflater inflater = new Inflater();
+        try (InputStream in = new InflaterInputStream(raw, inflater)) {
+            return new ByteArrayInputStream(in.readAllBytes());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Object readLegacy(byte[] bytes) {
+        try {
+            Object value = jdkSerializer.deserialize(bytes);
+            return value instanceof BookResponse || value instanceof BooksResponse ? value : null;
+        } catch (SerializationException e) {
+            log.debug("Legacy cache value cannot be read and is treated as a miss", e);
+            return null;
+        }
+    }
+
+    private static void writeBook(BookResponse book, DataOutputStream out) throws IOException {
+        writeNullableLong(book.getId(), out);
+        writeString(book.getName(), out);
+        writeString(book.getAuthor(), out);
+        writeString(book.getCategoryName(), out);
+        writeNullableLong(book.getVersion(), out);
+        writeInstant(book.getUpdatedAt(), out);
+    }
+
+    private static BookResponse readBook(DataInputStream in) throws IOException {
+        return new BookResponse(readNullableLong(in), readString(in), readString(in), readString(in),
+                readNullableLong(in), readInstant(in));
+    }
+
+    private static void writeBooks(BooksResponse books, DataOutputStream out) throws IOException {
+        List<BookShortResponse> items = books.getBooks() != null ? books.getBooks() : List.of();
+        writeVarLong(items.size(), out);
+        for (BookShortResponse item : items) {
+            writeNullableLong(item.getId(), out);
+            writeString(item.getName(), out);
+            writeString(item.getAuthor(), out);
+        }
+        writeNullableLong(books.getNextCursor(), out);
+    }
+
+    private static BooksResponse readBooks(DataInputStream in) throws IOException {
+        int size = (int) readVarLong(in);
+        List<BookShortResponse> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new BookShortResponse(readNullableLong(in), readString(in), readString(in)));
+        }
+        return new BooksResponse(items, readNullableLong(in));
+    }
+
+    private static boolean isCompressedResponse(Object value) {
+        return value instanceof EncodedResponse response && response.contentEncoding() != null;
+    }
+
+    private static void writeResponse(EncodedResponse response, DataOutputStream out) throws IOException {
+        writeString(response.eTag(), out);
+        writeVarLong(response.lastModified(), out);
+        writeString(response.contentEncoding(), out);
+        writeVarLong(response.body().length, out);
+        out.write(response.body());
+    }
+
+    private static EncodedResponse readResponse(DataInputStream in) throws IOException {
+        String eTag = readString(in);
+        long lastModified = readVarLong(in);
+        String contentEncoding = readString(in);
+        byte[] body = new byte[(int) readVarLong(in)];
+        in.readFully(body);
+        return new EncodedResponse(eTag, lastModified, contentEncoding, body);
+    }
+
+    private static void writeNullableLong(Long value, DataOutputStream out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(value, out);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readVarLong(in) : null;
+    }
+
+    private static void writeInstant(Instant value, DataOutputStream out) throws IOException {
+        writeNullableLong(value != null ? value.getEpochSecond() : null, out);
+        if (value != null) {
+            writeVarLong(value.getNano(), out);
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        Long seconds = readNullableLong(in);
+        return seconds != null ? Instant.ofEpochSecond(seconds, readVarLong(in)) : null;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            writeVarLong(0, out);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L, out);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(long value, DataOutputStream out) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,28 @@
+package ru.polyakov.bookstore.cache;
+
+import java.io.Serializable;
+
+/**
+ * Готовое тело ответа в одном представлении вместе с заголовками для условных запросов.
+ * <p>
+ * Тела хранятся в кэше {@link #cacheName(String)} рядом с кэшем значений, из которых построены,
+ * под теми же ключами с суффиксом представления. Поэтому удаление значения в {@link CacheInvalidator}
+ * удаляет и его тела, а поколения страниц категорий входят в ключи тел так же, как в ключи страниц.
+ *
+ * @param eTag            ETag представления или null
+ * @param lastModified    Last-Modified в миллисекундах или -1
+ * @param contentEncoding кодирование тела, например gzip, или null
+ */
+public record EncodedResponse(String eTag, long lastModified, String contentEncoding, byte[] body)
+        implements Serializable {
+
+    public static final String GZIP = "gzip";
+
+    public static String cacheName(String valueCacheName) {
+        return valueCacheName + "Body";
+    }
+
+    public static String key(String valueKey, boolean gzip) {
+        return gzip ? valueKey + "#" + GZIP : valueKey;
+    }
+}
@@ -0,0 +1,407 @@
+package ru.polyakov.bookstore.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Двухуровневый кэш: ограниченный по размеру L1 в памяти узла перед общим {@link RedisCache}.
+ * Удаление и очистка распространяются на L1 остальных узлов через {@link TwoLevelCacheManager}.
+ */
+public class TwoLevelCache implements Cache {
+
+    private static final byte[] BINARY_NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    private final Cache local;
+    private final RedisCache remote;
+    private final RedisConnectionFactory connectionFactory;
+    private final TwoLevelCacheManager manager;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+    private final Counter coalescedLoads;
+    private final Counter leaseContention;
+    private final Counter leaseWaitTimeouts;
+    private final Counter evictions;
+    private final Timer loads;
+    private final Timer failedLoads;
+
+    public TwoLevelCache(Cache local, RedisCache remote, RedisConnectionFactory connectionFactory,
+                         TwoLevelCacheManager manager, MeterRegistry meterRegistry) {
+        this.local = local;
+        this.remote = remote;
+        this.connectionFactory = connectionFactory;
+        this.manager = manager;
+        this.hits = lookups("hit", meterRegistry);
+        this.negativeHits = lookups("negative_hit", meterRegistry);
+        this.misses = lookups("miss", meterRegistry);
+        this.coalescedLoads = Counter.builder("cache.loads.coalesced")
+                .description("Промахи, дождавшиеся загрузки того же ключа на этом узле")
+                .tag("cache", remote.getName())
+                .register(meterRegistry);
+        this.leaseContention = Counter.builder("cache.lease.contended")
+                .description("Промахи, при которых аренду на загрузку держал другой узел")
+                .tag("cache", remote.getName())
+                .register(meterRegistry);
+        this.leaseWaitTimeouts = Counter.builder("cache.lease.wait.timeouts")
+                .description("Промахи, не дождавшиеся загрузки другим узлом")
+                .tag("cache", remote.getName())
+                .register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions")
+                .description("Ключи, удалённые из кэша при изменении данных на этом узле")
+                .tag("cache", remote.getName())
+                .register(meterRegistry);
+        this.loads = loadTimer("success", meterRegistry);
+        this.failedLoads = loadTimer("failure", meterRegistry);
+    }
+
+    private Counter lookups(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("cache.lookups")
+                .description("Обращения к кэшу по результату: значение, отрицательная запись или промах")
+                .tag("cache", remote.getName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer loadTimer(String result, MeterRegistry meterRegistry) {
+        return Timer.builder("cache.load")
+                .description("Время загрузки значения при промахе")
+                .tag("cache", remote.getName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        ValueWrapper wrapper = local.get(localKey);
+        if (wrapper != null) {
+            return recorded(wrapper);
+        }
+        wrapper = remote.get(key);
+        if (wrapper != null) {
+            local.put(localKey, wrapper.get());
+        }
+        return recorded(wrapper);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Загружает отсутствующее значение один раз: параллельные промахи по ключу на узле ждут первую загрузку,
+     * а между узлами загрузку выполняет держатель аренды в Redis. Остальные узлы ждут появления значения
+     * в Redis не дольше {@code wait-timeout} и после этого загружают его сами.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        ValueWrapper wrapper = local.get(localKey);
+        if (wrapper != null) {
+            return (T) recorded(wrapper).get();
+        }
+        CompletableFuture<Object> loading = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = inFlight.putIfAbsent(localKey, loading);
+        if (inProgress != null) {
+            coalescedLoads.increment();
+            return (T) await(inProgress);
+        }
+        try {
+            Object value = loadOnce(key, localKey, valueLoader);
+            loading.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(localKey, loading);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.put(localKey(key), existing != null ? existing.get() : value);
+        return existing;
+    }
+
+    private Object loadOnce(Object key, String localKey, Callable<?> valueLoader) {
+        ValueWrapper cached = recorded(remote.get(key));
+        if (cached != null) {
+            local.put(localKey, cached.get());
+            return cached.get();
+        }
+        CacheNames.LoadLease settings = manager.getLoadLease();
+        String lease = null;
+        if (settings.isEnabled()) {
+            lease = manager.acquireLease(getName(), localKey);
+            if (lease == null) {
+                leaseContention.increment();
+                cached = awaitRemote(key, settings);
+                if (cached != null) {
+                    local.put(localKey, cached.get());
+                    return cached.get();
+                }
+                leaseWaitTimeouts.increment();
+            }
+        }
+        try {
+            Object value = timedLoad(key, valueLoader);
+            put(key, value);
+            return value;
+        } finally {
+            if (lease != null) {
+                manager.releaseLease(getName(), localKey, lease);
+            }
+        }
+    }
+
+    private ValueWrapper awaitRemote(Object key, CacheNames.LoadLease settings) {
+        long deadline = System.nanoTime() + settings.getWaitTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(settings.getPollInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            ValueWrapper cached = remote.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    private ValueWrapper recorded(ValueWrapper wrapper) {
+        if (wrapper == null) {
+            misses.increment();
+        } else if (wrapper.get() == null) {
+            negativeHits.increment();
+        } else {
+            hits.increment();
+        }
+        return wrapper;
+    }
+
+    private Object timedLoad(Object key, Callable<?> valueLoader) {
+        long started = System.nanoTime();
+        try {
+            Object value = load(key, valueLoader);
+            loads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return value;
+        } catch (RuntimeException e) {
+            failedLoads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static Object load(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает найденные значения для переданных ключей: сначала из L1, остальные одним MGET из Redis.
+     * Отрицательные записи попадают в результат со значением {@code null}, ключи без записи не попадают.
+     */
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        Map<K, Object> found = new LinkedHashMap<>();
+        List<K> remoteKeys = new ArrayList<>();
+        for (K key : keys) {
+            ValueWrapper wrapper = local.get(localKey(key));
+            if (wrapper != null) {
+                found.put(key, recorded(wrapper).get());
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
+        byte[][] redisKeys = remoteKeys.stream().map(this::redisKey).toArray(byte[][]::new);
+        List<byte[]> values;
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            values = connection.stringCommands().mGet(redisKeys);
+        }
+        if (values == null) {
+            return found;
+        }
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            byte[] value = values.get(i);
+            K key = remoteKeys.get(i);
+            if (value != null && Arrays.equals(value, BINARY_NULL_VALUE)) {
+                negativeHits.increment();
+                local.put(localKey(key), null);
+                found.put(key, null);
+                continue;
+            }
+            Object deserialized = value != null ? deserialize(value) : null;
+            if (deserialized != null) {
+                hits.increment();
+                local.put(localKey(key), deserialized);
+                found.put(key, deserialized);
+            } else {
+                misses.increment();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Записывает значения в Redis одним конвейером и в L1.
+     */
+    public void putAll(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        RedisCacheConfiguration configuration = remote.getCacheConfiguration();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            entries.forEach((key, value) -> {
+                Duration ttl = configuration.getTtlFunction().getTimeToLive(key, value);
+                Expiration expiration = ttl == null || ttl.isZero() || ttl.isNegative()
+                        ? Expiration.persistent()
+                        : Expiration.from(ttl);
+                connection.stringCommands().set(redisKey(key), serialize(value), expiration, SetOption.upsert());
+            });
+            connection.closePipeline();
+        }
+        entries.forEach((key, value) -> local.put(localKey(key), value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = localKey(key);
+        remote.evict(key);
+        local.evict(localKey);
+        evictions.increment();
+        manager.publishInvalidation(getName(), List.of(localKey));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.clear();
+        manager.publishInvalidation(getName(), null);
+    }
+
+    void evictLocal(String localKey) {
+        local.evict(localKey);
+    }
+
+    void recordEvictions(int count) {
+        evictions.increment(count);
+    }
+
+    void clearLocal() {
+        local.clear();
+    }
+
+    byte[] redisKey(Object key) {
+        RedisCacheConfiguration configuration = remote.getCacheConfiguration();
+        return toBytes(configuration.getKeySerializationPair()
+                .write(configuration.getKeyPrefixFor(getName()) + localKey(key)));
+    }
+
+    private byte[] serialize(Object value) {
+        if (value == null) {
+            return BINARY_NULL_VALUE;
+        }
+        return toBytes(remote.getCacheConfiguration().getValueSerializationPair().write(value));
+    }
+
+    private Object deserialize(byte[] value) {
+        if (Arrays.equals(value, BINARY_NULL_VALUE)) {
+            return null;
+        }
+        return remote.getCacheConfiguration().getValueSerializationPair().read(ByteBuffer.wrap(value));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Ключ L1 совпадает со строковым представлением ключа в Redis,
+     * поэтому его можно передать другим узлам в сообщении об инвалидации.
+     */
+    String localKey(Object key) {
+        String converted = remote.getCacheConfiguration().getConversionService().convert(key, String.class);
+        return converted != null ? converted : String.valueOf(key);
+    }
+}
@@ -0,0 +1,201 @@
+package ru.polyakov.bookstore.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Менеджер двухуровневых кэшей поверх {@link RedisCacheManager}.
+ * Публикует инвалидации L1 в канал {@link #INVALIDATION_CHANNEL} и сам слушает его.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache-invalidation";
+
+    private static final String LEASE_PREFIX = "lease::";
+    private static final RedisScript<Long> RELEASE_LEASE = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final RedisCacheManager redisCacheManager;
+    private final RedisConnectionFactory connectionFactory;
+    private final CacheNames cacheProperties;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, RedisConnectionFactory connectionFactory,
+                                CacheNames cacheProperties, StringRedisTemplate redisTemplate,
+                                ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.connectionFactory = connectionFactory;
+        this.cacheProperties = cacheProperties;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public TwoLevelCache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        RedisCache remote = (RedisCache) redisCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> new TwoLevelCache(
+                createLocalCache(cacheName), remote, connectionFactory, this, meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidationMessage invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), CacheInvalidationMessage.class);
+        } catch (IOException e) {
+            log.warn("Unreadable cache invalidation message skipped", e);
+            return;
+        }
+        if (origin.equals(invalidation.origin())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        if (invalidation.keys() != null) {
+            invalidation.keys().forEach(cache::evictLocal);
+        } else {
+            cache.clearLocal();
+        }
+    }
+
+    void publishInvalidation(String cacheName, List<String> keys) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, invalidationMessage(cacheName, keys));
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish invalidation of {}::{}, other nodes will expire it by ttl",
+                    cacheName, keys, e);
+        }
+    }
+
+    /**
+     * Сообщение для остальных узлов об удалении ключей из L1. Ключи {@code null} означают очистку кэша,
+     * пустой список не удаляет ничего.
+     */
+    String invalidationMessage(String cacheName, List<String> keys) {
+        try {
+            return objectMapper.writeValueAsString(new CacheInvalidationMessage(origin, cacheName, keys));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write cache invalidation message", e);
+        }
+    }
+
+    CacheNames.LoadLease getLoadLease() {
+        return cacheProperties.getLoadLease();
+    }
+
+    /**
+     * Берёт аренду на загрузку ключа. Возвращает токен аренды или {@code null}, если её держит другой узел.
+     * Если Redis недоступен, загрузка разрешается без аренды.
+     */
+    String acquireLease(String cacheName, String key) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(leaseKey(cacheName, key), token, getLoadLease().getTtl());
+            return Boolean.FALSE.equals(acquired) ? null : token;
+        } catch (RuntimeException e) {
+            log.warn("Failed to acquire load lease for {}::{}, loading without it", cacheName, key, e);
+            return token;
+        }
+    }
+
+    void releaseLease(String cacheName, String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE, List.of(leaseKey(cacheName, key)), token);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release load lease for {}::{}, it will expire by ttl", cacheName, key, e);
+        }
+    }
+
+    private static String leaseKey(String cacheName, String key) {
+        return LEASE_PREFIX + cacheName + "::" + key;
+    }
+
+    private Cache createLocalCache(String cacheName) {
+        CacheNames.LocalCache settings = cacheProperties.getLocalCache(cacheName);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new WriteExpiry(settings.getTtl(), cacheProperties.getNegativeTtl()))
+                .recordStats()
+                .build();
+        Gauge.builder("cache.local.size", local, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .description("Примерное число записей в L1")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.local.evictions", local, cache -> cache.stats().evictionCount())
+                .description("Записи, вытесненные из L1 по размеру или сроку жизни")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        return new CaffeineCache(cacheName, local);
+    }
+
+    /**
+     * Срок жизни с момента записи. Для отрицательных записей, которые CaffeineCache хранит
+     * как {@link NullValue}, он свой.
+     */
+    private record WriteExpiry(Duration ttl, Duration negativeTtl) implements Expiry<Object, Object> {
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return (value == NullValue.INSTANCE ? negativeTtl : ttl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package ru.polyakov.bookstore.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,26 +12,40 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.polyakov.bookstore.dto.request.BookKeyRequest;
 import ru.polyakov.bookstore.dto.request.CreateBookRequest;
+import ru.polyakov.bookstore.dto.request.CreateBooksRequest;
+import ru.polyakov.bookstore.dto.request.FindBooksRequest;
 import ru.polyakov.bookstore.dto.request.UpdateBookRequest;
 import ru.polyakov.bookstore.dto.response.BookResponse;
 import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.dto.response.CreatedBooksResponse;
+import ru.polyakov.bookstore.dto.response.FoundBooksResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionsResponse;
+
+import java.util.List;
 
 @RequestMapping("/api/v1")
 public interface BookController {
 
     @Operation(
             summary = "Нахождение книги по id",
-            description = "Нахождение книги по id",
+            description = "Нахождение книги по id. Ответ содержит ETag с версией книги и Last-Modified",
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "304", description = "Книга не изменилась с указанной в "
+                            + "If-None-Match версии"),
                     @ApiResponse(responseCode = "400", description = "Некорректный id"),
                     @ApiResponse(responseCode = "404", description = "Книга не найдена")
             }
     )
     @GetMapping("/book/{id}")
+    @CachedResponse("book")
     ResponseEntity<BookResponse> findById(@PathVariable Long id);
 
     @Operation(
@@ -41,15 +57,88 @@ public interface BookController {
             }
     )
     @GetMapping("/book")
+    @CachedResponse("bookByNameAndAuthor")
     ResponseEntity<BookResponse> findByAuthorAndName(@RequestParam String name, @RequestParam String author);
 
+    @Operation(
+            summary = "Нахождение книг по списку id",
+            description = "Нахождение до 100 книг по id. Книги возвращаются в порядке запроса, "
+                    + "ненайденные id перечисляются в поле missing",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный id или слишком много id")
+            }
+    )
+    @GetMapping(value = "/book", params = "ids")
+    ResponseEntity<FoundBooksResponse<Long>> findAllById(@RequestParam List<Long> ids);
+
+    @Operation(
+            summary = "Нахождение книг по списку названий и авторов",
+            description = "Нахождение до 100 книг по паре название и автор. Книги возвращаются в порядке запроса, "
+                    + "ненайденные пары перечисляются в поле missing",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос")
+            }
+    )
+    @PostMapping("/books:lookup")
+    ResponseEntity<FoundBooksResponse<BookKeyRequest>> findAllByNameAndAuthor(
+            @Valid @RequestBody FindBooksRequest request);
+
     @Operation(
             summary = "Нахождение книг по категории",
-            description = "Нахождение книг по категории",
-            responses = @ApiResponse(responseCode = "200", description = "OK")
+            description = "Постраничное нахождение книг по категории. "
+                    + "Для получения следующей страницы передайте nextCursor из ответа в параметре cursor. "
+                    + "Ответ содержит ETag с ревизией категории, которая меняется при любом изменении её книг. "
+                    + "Совпадающий If-None-Match проверяется до загрузки страницы",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "304", description = "Книги категории не изменились с указанной в "
+                            + "If-None-Match ревизии"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный размер страницы")
+            }
     )
     @GetMapping("{category}/book")
-    ResponseEntity<BooksResponse> findByCategory(@PathVariable String category);
+    @CachedResponse("books")
+    ResponseEntity<BooksResponse> findByCategory(@PathVariable String category,
+                                                 @RequestParam(defaultValue = "0") Long cursor,
+                                                 @RequestParam(defaultValue = "20") Integer size,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                 String ifNoneMatch);
+
+    @Operation(
+            summary = "Поиск книг по словам",
+            description = "Нахождение книг, в названии или авторе которых есть все слова запроса, "
+                    + "по убыванию релевантности. Регистр и различие «е» и «ё» не учитываются",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "400", description = "Пустой запрос или некорректный размер страницы")
+            }
+    )
+    @GetMapping("/book/search")
+    ResponseEntity<SearchBooksResponse> search(@RequestParam String q,
+                                               @RequestParam(defaultValue = "20") Integer size);
+
+    @Operation(
+            summary = "Подсказки по началу названия или автора",
+            description = "Названия и авторы, начинающиеся с префикса, по убыванию числа книг. "
+                    + "Регистр и различие «е» и «ё» не учитываются",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "400", description = "Пустой префикс или некорректное число подсказок")
+            }
+    )
+    @GetMapping("/book/suggest")
+    ResponseEntity<SuggestionsResponse> suggest(@RequestParam String prefix,
+                                                @RequestParam(defaultValue = "10") Integer size);
+
+    @Operation(
+            summary = "Выгрузка всех книг",
+            description = "Потоковая выгрузка всех книг в формате NDJSON, по одной книге на строку",
+            responses = @ApiResponse(responseCode = "200", description = "OK")
+    )
+    @GetMapping(value = "/book/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> exportAll();
 
     @Operation(
             summary = "Создание книги",
@@ -59,17 +148,34 @@ public interface BookController {
     @PostMapping("/book")
     ResponseEntity<BookResponse> save(@Valid @RequestBody CreateBookRequest request);
 
+    @Operation(
+            summary = "Пакетное создание книг",
+            description = "Создание до 1000 книг за один запрос в одной транзакции",
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Книги созданы"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос или книга уже есть")
+            }
+    )
+    @PostMapping("/books:batch")
+    ResponseEntity<CreatedBooksResponse> saveAll(@Valid @RequestBody CreateBooksRequest request);
+
     @Operation(
             summary = "Редактирование книги по id",
-            description = "Редактирование книги по id",
+            description = "Редактирование книги по id. С заголовком If-Match книга изменяется, "
+                    + "только если её версия совпадает с ETag из заголовка",
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK"),
                     @ApiResponse(responseCode = "400", description = "Некорректный id"),
                     @ApiResponse(responseCode = "404", description = "Книга не найдена"),
+                    @ApiResponse(responseCode = "409", description = "Книгу одновременно изменил другой запрос"),
+                    @ApiResponse(responseCode = "412", description = "Версия книги не совпадает с If-Match"),
             }
     )
     @PutMapping("/book/{id}")
-    ResponseEntity<BookResponse> updateById(@PathVariable Long id, @Valid @RequestBody UpdateBookRequest request);
+    ResponseEntity<BookResponse> updateById(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                            String ifMatch,
+                                            @Valid @RequestBody UpdateBookRequest request);
 
     @Operation(
             summary = "Удаление книги по id",
@@ -0,0 +1,19 @@
+package ru.polyakov.bookstore.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Эндпоинт чтения, готовое тело которого хранит {@link ResponseBodyCache}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachedResponse {
+
+    /**
+     * Кэш значений, из которых строится тело. Его ключи и инвалидации действуют и для тела.
+     */
+    String value();
+}
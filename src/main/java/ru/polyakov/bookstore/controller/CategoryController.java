@@ -0,0 +1,23 @@
+package ru.polyakov.bookstore.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import ru.polyakov.bookstore.dto.response.CategoryStatsResponse;
+
+@RequestMapping("/api/v1")
+public interface CategoryController {
+
+    @Operation(
+            summary = "Число книг по категориям",
+            description = "Число книг в каждой категории по убыванию и общее число книг. "
+                    + "Данные берутся из счётчиков и кэшируются, поэтому могут отставать на несколько секунд",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK")
+            }
+    )
+    @GetMapping("/category/stats")
+    ResponseEntity<CategoryStatsResponse> getStats();
+}
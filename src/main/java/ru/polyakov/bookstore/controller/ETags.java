@@ -0,0 +1,79 @@
+package ru.polyakov.bookstore.controller;
+
+import ru.polyakov.bookstore.cache.EncodedResponse;
+import ru.polyakov.bookstore.exception.PreconditionFailedException;
+
+import static java.lang.String.format;
+
+/**
+ * Сильные ETag книг и страниц категорий: версия книги или ревизия категории в кавычках.
+ * У сжатого представления к номеру добавляется кодирование, например {@code "3-gzip"}.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(long revision) {
+        return "\"" + revision + "\"";
+    }
+
+    /**
+     * ETag страницы категории из ревизии категории, см. {@code CacheGenerations#categoryRevision}.
+     */
+    public static String ofCategory(String revision) {
+        return "\"c" + revision + "\"";
+    }
+
+    /**
+     * Совпадает ли заголовок If-None-Match с eTag или с ETag его сжатого представления.
+     * Как и положено для If-None-Match, теги сравниваются слабо.
+     */
+    public static boolean matchesAny(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String gzipped = encoded(eTag, EncodedResponse.GZIP);
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag) || candidate.equals(gzipped)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ETag представления с кодированием contentEncoding. Без ETag или кодирования возвращает eTag как есть.
+     */
+    public static String encoded(String eTag, String contentEncoding) {
+        if (eTag == null || contentEncoding == null || !eTag.endsWith("\"")) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + contentEncoding + "\"";
+    }
+
+    /**
+     * Версия книги из заголовка If-Match или null, если заголовка нет или он равен {@code *}.
+     * Слабый или чужой тег не совпадает ни с одной версией, поэтому сразу даёт 412.
+     */
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            int encoding = value.indexOf('-');
+            try {
+                return Long.parseLong(encoding > 0 ? value.substring(0, encoding) : value);
+            } catch (NumberFormatException ignored) {
+                // не наш тег
+            }
+        }
+        throw new PreconditionFailedException(format("Заголовок If-Match %s не совпадает с версией книги", tag));
+    }
+}
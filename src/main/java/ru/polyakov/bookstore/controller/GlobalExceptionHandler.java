@@ -2,6 +2,7 @@ package ru.polyakov.bookstore.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -10,10 +11,13 @@ import org.springframework.web.method.annotation.MethodArgumentTypeMismatchExcep
 import ru.polyakov.bookstore.dto.response.ResponseMessageDto;
 import ru.polyakov.bookstore.exception.BadRequestException;
 import ru.polyakov.bookstore.exception.NotFoundException;
+import ru.polyakov.bookstore.exception.PreconditionFailedException;
 
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 
 @Slf4j
 @RestControllerAdvice
@@ -33,6 +37,21 @@ public class GlobalExceptionHandler {
                 .body(new ResponseMessageDto(ex.getMessage()));
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ResponseMessageDto> handlePreconditionFailedException(PreconditionFailedException ex) {
+        log.info("Precondition failed exception handled with message: {}", ex.getMessage());
+        return ResponseEntity.status(PRECONDITION_FAILED)
+                .body(new ResponseMessageDto(ex.getMessage()));
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ResponseMessageDto> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException ex) {
+        log.info("Concurrent modification detected: {}", ex.getMessage());
+        return ResponseEntity.status(CONFLICT)
+                .body(new ResponseMessageDto("Книга изменена параллельным запросом, повторите запрос"));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ResponseMessageDto> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex) {
         String message = ex.getBindingResult().getAllErrors().stream()
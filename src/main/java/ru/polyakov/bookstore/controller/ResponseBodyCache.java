@@ -0,0 +1,234 @@
+package ru.polyakov.bookstore.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheKeys;
+import ru.polyakov.bookstore.cache.EncodedResponse;
+import ru.polyakov.bookstore.cache.TwoLevelCacheManager;
+import ru.polyakov.bookstore.controller.config.ResponseCache;
+import ru.polyakov.bookstore.service.CacheWarmer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых тел ответов эндпоинтов с {@link CachedResponse}: JSON и его gzip. Включается
+ * {@code app.response-cache.enabled}.
+ * <p>
+ * При попадании байты вместе с ETag и Last-Modified пишутся в ответ до вызова контроллера, без сервиса,
+ * кэша значений и Jackson; If-None-Match проверяется по сохранённому ETag. При промахе контроллер
+ * работает как обычно, а возвращённое им тело кодируется один раз, сохраняется во всех представлениях
+ * и отдаётся клиенту в нужном. Ключи и инвалидации тел общие с кэшем значений, см. {@link EncodedResponse}.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "app.response-cache.enabled", havingValue = "true")
+@ControllerAdvice
+public class ResponseBodyCache implements HandlerInterceptor, ResponseBodyAdvice<Object>, WebMvcConfigurer {
+
+    private static final String PENDING = ResponseBodyCache.class.getName() + ".pending";
+
+    private final TwoLevelCacheManager cacheManager;
+    private final CacheGenerations cacheGenerations;
+    private final CacheWarmer cacheWarmer;
+    private final ObjectMapper objectMapper;
+    private final ResponseCache settings;
+
+    public ResponseBodyCache(TwoLevelCacheManager cacheManager, CacheGenerations cacheGenerations,
+                             CacheWarmer cacheWarmer, ObjectMapper objectMapper, ResponseCache settings) {
+        this.cacheManager = cacheManager;
+        this.cacheGenerations = cacheGenerations;
+        this.cacheWarmer = cacheWarmer;
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod method) || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        CachedResponse cached = method.getMethodAnnotation(CachedResponse.class);
+        if (cached == null) {
+            return true;
+        }
+        String valueKey = valueKey(cached.value(), request);
+        if (valueKey == null) {
+            return true;
+        }
+        boolean gzip = settings.isGzip() && acceptsGzip(request);
+        String cacheName = EncodedResponse.cacheName(cached.value());
+        EncodedResponse body = cacheManager.getCache(cacheName)
+                .get(EncodedResponse.key(valueKey, gzip), EncodedResponse.class);
+        if (body == null) {
+            request.setAttribute(PENDING, new Pending(cacheName, valueKey, gzip));
+            return true;
+        }
+        recordAccess(cached.value(), request);
+        if (gzip) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (!new ServletWebRequest(request, response).checkNotModified(body.eTag(), body.lastModified())) {
+            write(response, body);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(CachedResponse.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || !MediaType.APPLICATION_JSON.isCompatibleWith(selectedContentType)
+                || !(request instanceof ServletServerHttpRequest servletRequest)
+                || !(response instanceof ServletServerHttpResponse servletResponse)
+                || servletResponse.getServletResponse().getStatus() != HttpServletResponse.SC_OK
+                || !(servletRequest.getServletRequest().getAttribute(PENDING) instanceof Pending pending)) {
+            return body;
+        }
+        try {
+            EncodedResponse identity = new EncodedResponse(response.getHeaders().getETag(),
+                    response.getHeaders().getLastModified(), null, objectMapper.writeValueAsBytes(body));
+            EncodedResponse gzipped = settings.isGzip() ? gzipped(identity) : identity;
+            cacheManager.getCache(pending.cacheName()).putAll(Map.of(
+                    EncodedResponse.key(pending.valueKey(), false), identity,
+                    EncodedResponse.key(pending.valueKey(), true), gzipped));
+            // Заголовки из ResponseEntity уходят в ответ первыми, ETag и Last-Modified там уже выставил
+            // HttpEntityMethodProcessor, и ниже они заменяются заголовками выбранного представления
+            servletResponse.getBody();
+            if (settings.isGzip()) {
+                servletResponse.getServletResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            write(servletResponse.getServletResponse(), pending.gzip() ? gzipped : identity);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to cache response body of {}, writing it as usual", pending, e);
+            return body;
+        }
+    }
+
+    /**
+     * Ключ значения, из которого строится тело, как его вычисляет {@code BookServiceImpl}.
+     * null, если параметры запроса некорректны: тогда запрос проходит мимо кэша тел и получает обычную ошибку.
+     */
+    @SuppressWarnings("unchecked")
+    private String valueKey(String valueCacheName, HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        try {
+            return switch (valueCacheName) {
+                case "book" -> String.valueOf(Long.parseLong(variables.get("id")));
+                case "bookByNameAndAuthor" -> request.getParameter("name") != null
+                        && request.getParameter("author") != null
+                        ? CacheKeys.nameAndAuthor(request.getParameter("name"), request.getParameter("author"))
+                        : null;
+                case "books" -> cacheGenerations.categoryPageKey(variables.get("category"),
+                        parseOrDefault(request.getParameter("cursor"), 0),
+                        Math.toIntExact(parseOrDefault(request.getParameter("size"), 20)));
+                default -> throw new IllegalStateException("No response body key for cache " + valueCacheName);
+            };
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Учитывает обращение для прогрева так же, как контроллер, который при попадании не вызывается.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordAccess(String valueCacheName, HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        switch (valueCacheName) {
+            case "book" -> cacheWarmer.recordBookAccess(Long.parseLong(variables.get("id")));
+            case "books" -> cacheWarmer.recordCategoryAccess(variables.get("category"));
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * gzip тела с ETag сжатого представления. Маленькие тела не сжимаются, и для клиентов с gzip
+     * хранится то же несжатое представление.
+     */
+    private EncodedResponse gzipped(EncodedResponse identity) throws IOException {
+        if (identity.body().length < settings.getGzipMinSize()) {
+            return identity;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(identity.body().length / 4 + 32);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(identity.body());
+        }
+        return new EncodedResponse(ETags.encoded(identity.eTag(), EncodedResponse.GZIP), identity.lastModified(),
+                EncodedResponse.GZIP, compressed.toByteArray());
+    }
+
+    private static void write(HttpServletResponse response, EncodedResponse body) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.body().length);
+        if (body.eTag() != null) {
+            response.setHeader(HttpHeaders.ETAG, body.eTag());
+        }
+        if (body.lastModified() >= 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, body.lastModified());
+        }
+        if (body.contentEncoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, body.contentEncoding());
+        }
+        response.getOutputStream().write(body.body());
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(EncodedResponse.GZIP)) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static long parseOrDefault(String value, long defaultValue) {
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private record Pending(String cacheName, String valueKey, boolean gzip) {
+    }
+}
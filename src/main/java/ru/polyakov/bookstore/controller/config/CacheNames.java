@@ -3,11 +3,104 @@ package ru.polyakov.bookstore.controller.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @ConfigurationProperties(prefix = "app")
 public class CacheNames {
 
     private List<String> caches;
+
+    private Map<String, LocalCache> localCaches = new HashMap<>();
+
+    /**
+     * Время жизни записей в Redis по именам кэшей. Кэши без ttl хранятся до явной инвалидации
+     */
+    private Map<String, Duration> ttl = new HashMap<>();
+
+    /**
+     * Сколько узел держит в памяти поколение категории, если сообщение о его смене потерялось
+     */
+    private Duration generationTtl = Duration.ofSeconds(15);
+
+    /**
+     * Размер значения в байтах, начиная с которого оно сжимается перед записью в Redis
+     */
+    private int compressionThreshold = 1024;
+
+    private LoadLease loadLease = new LoadLease();
+
+    /**
+     * Время жизни отрицательной записи о том, что значения нет, на обоих уровнях кэша
+     */
+    private Duration negativeTtl = Duration.ofSeconds(10);
+
+    private Invalidation invalidation = new Invalidation();
+
+    public LocalCache getLocalCache(String cacheName) {
+        return localCaches.getOrDefault(cacheName, new LocalCache());
+    }
+
+    @Data
+    public static class LocalCache {
+
+        private long maximumSize = 1_000;
+
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Аренда в Redis, по которой только один узел загружает отсутствующее в кэше значение
+     */
+    @Data
+    public static class LoadLease {
+
+        private boolean enabled = true;
+
+        private Duration ttl = Duration.ofSeconds(5);
+
+        private Duration waitTimeout = Duration.ofSeconds(1);
+
+        private Duration pollInterval = Duration.ofMillis(20);
+    }
+
+    /**
+     * Повтор инвалидаций, которые не удалось выполнить в Redis после фиксации транзакции
+     */
+    @Data
+    public static class Invalidation {
+
+        private int retryQueueSize = 1_000;
+
+        private Duration retryInterval = Duration.ofSeconds(1);
+
+        private int maxAttempts = 10;
+
+        /**
+         * Потоки, которые отправляют пакеты в Redis вместо потока запроса
+         */
+        private int flushThreads = 2;
+
+        /**
+         * Пакеты, ждущие отправки. Пакет сверх очереди сразу попадает в очередь повторов
+         */
+        private int flushQueueSize = 1_000;
+
+        /**
+         * Сколько поток запроса ждёт отправки пакета, прежде чем отпустить соединение с базой.
+         * Пакет, не успевший за это время, дойдёт до Redis в фоне
+         */
+        private Duration flushWait = Duration.ofMillis(100);
+
+        /**
+         * Через сколько после фиксации повторить инвалидацию, чтобы удалить значения, которые успели
+         * загрузить с реплики до того, как она получила запись. 0 — не повторять. Если не задано, без реплик
+         * инвалидация не повторяется, а с репликами повторяется через {@code app.read-replicas.max-lag}
+         * плюс {@code health-check-interval}; заданное явно значение не может быть меньше этой суммы
+         */
+        private Duration repeatAfter;
+    }
 }
@@ -0,0 +1,28 @@
+package ru.polyakov.bookstore.controller.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Свёртка изменений и сверка счётчиков книг категорий с таблицей книг, см. {@code CategoryStatsReconciler}
+ */
+@Data
+@ConfigurationProperties(prefix = "app.category-stats")
+public class CategoryStats {
+
+    private boolean reconcileEnabled = true;
+
+    private Duration reconcileInterval = Duration.ofMinutes(10);
+
+    /**
+     * Сколько категорий блокируется и пересчитывается или сворачивается в одной транзакции
+     */
+    private int reconcileBatchSize = 500;
+
+    /**
+     * Как часто переносить изменения числа книг из category_book_count_delta в счётчики категорий
+     */
+    private Duration foldInterval = Duration.ofSeconds(5);
+}
@@ -0,0 +1,116 @@
+package ru.polyakov.bookstore.controller.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.polyakov.bookstore.datasource.ReadReplicaRoutingDataSource;
+import ru.polyakov.bookstore.datasource.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Основная база из {@code spring.datasource} и реплики из {@code app.read-replicas} за одним источником,
+ * который отправляет read-only транзакции на реплики. Пулы всех маршрутов пишут метрики
+ * {@code hikaricp.*} с тегом {@code pool}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.read-replicas.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicas.class)
+public class DataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReadReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                                     ReadReplicas readReplicas,
+                                                                     CacheNames cacheProperties,
+                                                                     MeterRegistry meterRegistry) {
+        checkRepeatAfter(readReplicas, cacheProperties.getInvalidation());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReadReplicas.Replica> nodes = readReplicas.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            ReadReplicas.Replica node = nodes.get(i);
+            String name = node.getName() != null ? node.getName() : "replica-" + (i + 1);
+            replicas.put(name, replica(primaryDataSource, node, name, readReplicas, meterRegistry));
+        }
+        return new ReadReplicaRoutingDataSource(primaryDataSource, replicas,
+                new ReadYourWrites(readReplicas.getReadYourWritesWindow(), Clock.systemUTC()),
+                readReplicas.getMaxLag(), readReplicas.getHealthCheckInterval(), meterRegistry);
+    }
+
+    /**
+     * Источник для JPA, Liquibase и остальных потребителей. Соединение берётся при первом запросе,
+     * когда уже известно, read-only ли транзакция.
+     */
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource,
+                                                    HikariDataSource primaryDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(readReplicaRoutingDataSource);
+        // Без явных значений прокси берёт соединение при старте, чтобы их узнать
+        dataSource.setDefaultAutoCommit(primaryDataSource.isAutoCommit());
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+
+    /**
+     * Промах кэша в read-only транзакции читает реплику, и значение, загруженное до того, как она получила
+     * запись, остаётся в кэше. Его удаляет только повтор инвалидации, поэтому повтор должен наступать не раньше,
+     * чем реплику с таким отставанием исключит проверка. Не заданный повтор берётся равным этому сроку,
+     * см. {@code RedisConfiguration#cacheInvalidator}.
+     */
+    private static void checkRepeatAfter(ReadReplicas readReplicas, CacheNames.Invalidation invalidation) {
+        Duration staleFor = readReplicas.staleReadWindow();
+        if (invalidation.getRepeatAfter() != null && invalidation.getRepeatAfter().compareTo(staleFor) < 0) {
+            throw new IllegalStateException("app.invalidation.repeat-after is " + invalidation.getRepeatAfter()
+                    + ", but with read replicas it must be at least max-lag plus health-check-interval, " + staleFor
+                    + ": otherwise values read from a lagging replica stay in the caches until their ttl");
+        }
+    }
+
+    private static HikariDataSource replica(HikariDataSource primary, ReadReplicas.Replica node, String name,
+                                            ReadReplicas readReplicas, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        primary.copyStateTo(config);
+        config.setPoolName(name);
+        config.setJdbcUrl(node.getUrl());
+        if (node.getUsername() != null) {
+            config.setUsername(node.getUsername());
+        }
+        if (node.getPassword() != null) {
+            config.setPassword(node.getPassword());
+        }
+        if (node.getMaximumPoolSize() != null) {
+            config.setMaximumPoolSize(node.getMaximumPoolSize());
+        }
+        config.setReadOnly(true);
+        config.setConnectionTimeout(readReplicas.getConnectionTimeout().toMillis());
+        // Недоступная при старте реплика не мешает запуску, её исключит проверка
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+}
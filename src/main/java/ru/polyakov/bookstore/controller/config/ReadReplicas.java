@@ -0,0 +1,65 @@
+package ru.polyakov.bookstore.controller.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реплики для read-only транзакций, см. {@code ReadReplicaRoutingDataSource}. С репликами
+ * {@code app.invalidation.repeat-after} по умолчанию равен {@link #staleReadWindow()}, а заданный явно
+ * не может быть меньше, иначе приложение не запустится: значение, загруженное в кэш с отстающей
+ * реплики, удаляет только повтор инвалидации.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.read-replicas")
+public class ReadReplicas {
+
+    private boolean enabled = false;
+
+    private List<Replica> nodes = new ArrayList<>();
+
+    /**
+     * Реплика с большим отставанием не получает чтений до следующей проверки
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * Сколько после своей записи клиент читает с основной базы
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Сколько ждать соединения реплики, прежде чем перейти на другую или на основную базу
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Сколько реплика может отдавать устаревшие данные: отставание до {@link #maxLag} остаётся
+     * незамеченным до следующей проверки
+     */
+    public Duration staleReadWindow() {
+        return maxLag.plus(healthCheckInterval);
+    }
+
+    /**
+     * Реплика. Не заданные логин, пароль и размер пула берутся у основной базы
+     */
+    @Data
+    public static class Replica {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private Integer maximumPoolSize;
+    }
+}
@@ -1,34 +1,83 @@
 package ru.polyakov.bookstore.controller.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.metrics.MicrometerOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheInvalidator;
+import ru.polyakov.bookstore.cache.CacheValueSerializer;
+import ru.polyakov.bookstore.cache.EncodedResponse;
+import ru.polyakov.bookstore.cache.TwoLevelCacheManager;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 @EnableCaching
 @Configuration
-@EnableConfigurationProperties(CacheNames.class)
+@EnableConfigurationProperties({CacheNames.class, WarmUp.class, Search.class, ResponseCache.class,
+        CategoryStats.class})
 public class RedisConfiguration {
 
+    /**
+     * Гистограммы задержек команд Redis, которые Lettuce пишет в метрики {@code lettuce.command.*}.
+     */
     @Bean
-    public LettuceConnectionFactory lettuceConnectionFactory(RedisProperties redisProperties) {
+    public MicrometerOptions lettuceMicrometerOptions() {
+        return MicrometerOptions.builder().histogram(true).targetPercentiles(new double[0]).build();
+    }
+
+    /**
+     * {@code clientResources} создаёт Spring Boot, через них подключена запись задержек команд в метрики.
+     */
+    @Bean
+    public LettuceConnectionFactory lettuceConnectionFactory(RedisProperties redisProperties,
+                                                             ClientResources clientResources) {
         RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration();
 
         configuration.setHostName(redisProperties.getHost());
         configuration.setPort(redisProperties.getPort());
 
-        return new LettuceConnectionFactory(configuration);
+        RedisProperties.Pool pool = redisProperties.getLettuce().getPool();
+        if (!Boolean.TRUE.equals(pool.getEnabled())) {
+            return new LettuceConnectionFactory(configuration, LettuceClientConfiguration.builder()
+                    .clientResources(clientResources)
+                    .build());
+        }
+        GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(pool.getMaxActive());
+        poolConfig.setMaxIdle(pool.getMaxIdle());
+        poolConfig.setMinIdle(pool.getMinIdle());
+        poolConfig.setMaxWait(pool.getMaxWait());
+        // Пул нужен для выделенных соединений конвейеров, обычные команды идут через общее соединение
+        return new LettuceConnectionFactory(configuration, LettucePoolingClientConfiguration.builder()
+                .poolConfig(poolConfig)
+                .clientResources(clientResources)
+                .build());
     }
 
     @Bean
@@ -36,21 +85,79 @@ public class RedisConfiguration {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setEnableTransactionSupport(true);
         return template;
     }
 
     @Bean
-    public CacheManager redisCacheManager(CacheNames appCacheProperties, LettuceConnectionFactory factory) {
-        var defaultConfig = RedisCacheConfiguration.defaultCacheConfig();
+    public TwoLevelCacheManager cacheManager(CacheNames appCacheProperties, ResponseCache responseCache,
+                                             LettuceConnectionFactory factory, StringRedisTemplate stringRedisTemplate,
+                                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        var valueSerializer = new CacheValueSerializer(appCacheProperties.getCompressionThreshold());
+        var defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(ttlFunction(appCacheProperties.getNegativeTtl(), Duration.ZERO))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
         Map<String, RedisCacheConfiguration> redisCacheConfigurationMap = new HashMap<>();
 
-        appCacheProperties.getCaches().forEach(cacheName ->
-                redisCacheConfigurationMap.put(cacheName, RedisCacheConfiguration.defaultCacheConfig()));
+        appCacheProperties.getCaches().forEach(cacheName -> redisCacheConfigurationMap.put(cacheName,
+                defaultConfig.entryTtl(ttlFunction(appCacheProperties.getNegativeTtl(),
+                        appCacheProperties.getTtl().getOrDefault(cacheName, Duration.ZERO)))));
+        if (responseCache.isEnabled()) {
+            appCacheProperties.getCaches().forEach(cacheName -> redisCacheConfigurationMap.put(
+                    EncodedResponse.cacheName(cacheName),
+                    defaultConfig.entryTtl(ttlFunction(appCacheProperties.getNegativeTtl(), responseCache.getTtl()))));
+        }
 
-        return RedisCacheManager.builder(factory)
+        RedisCacheManager redisCacheManager = RedisCacheManager
+                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(factory, BatchStrategies.scan(1000)))
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(redisCacheConfigurationMap)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, factory, appCacheProperties,
+                stringRedisTemplate, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public CacheGenerations cacheGenerations(StringRedisTemplate stringRedisTemplate, CacheNames appCacheProperties) {
+        return new CacheGenerations(stringRedisTemplate, appCacheProperties.getGenerationTtl());
+    }
+
+    @Bean
+    public CacheInvalidator cacheInvalidator(TwoLevelCacheManager cacheManager, CacheGenerations cacheGenerations,
+                                             LettuceConnectionFactory factory, CacheNames appCacheProperties,
+                                             ResponseCache responseCache,
+                                             ObjectProvider<ReadReplicas> readReplicas, MeterRegistry meterRegistry) {
+        return new CacheInvalidator(cacheManager, cacheGenerations, factory, appCacheProperties, responseCache,
+                repeatAfter(appCacheProperties.getInvalidation(), readReplicas.getIfAvailable()), meterRegistry);
+    }
+
+    /**
+     * Не заданный {@code repeat-after}: без реплик повторять нечего, а с ними повтор наступает, когда
+     * отстающую реплику уже исключила проверка
+     */
+    private static Duration repeatAfter(CacheNames.Invalidation invalidation, ReadReplicas readReplicas) {
+        if (invalidation.getRepeatAfter() != null) {
+            return invalidation.getRepeatAfter();
+        }
+        return readReplicas != null && readReplicas.isEnabled() ? readReplicas.staleReadWindow() : Duration.ZERO;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(LettuceConnectionFactory factory,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       CacheGenerations cacheGenerations) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        container.addMessageListener(cacheGenerations, new ChannelTopic(CacheGenerations.CHANNEL));
+        return container;
+    }
+
+    /**
+     * Отрицательные записи живут {@code negativeTtl}, остальные {@code ttl}, нулевой ttl означает бессрочное хранение.
+     */
+    private static RedisCacheWriter.TtlFunction ttlFunction(Duration negativeTtl, Duration ttl) {
+        return (key, value) -> value == null || value instanceof NullValue ? negativeTtl : ttl;
     }
 }
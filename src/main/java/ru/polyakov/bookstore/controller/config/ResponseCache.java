@@ -0,0 +1,32 @@
+package ru.polyakov.bookstore.controller.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Кэш готовых тел ответов чтения рядом с кэшами значений, см. {@code ResponseBodyCache}
+ */
+@Data
+@ConfigurationProperties(prefix = "app.response-cache")
+public class ResponseCache {
+
+    private boolean enabled = false;
+
+    /**
+     * Хранить ли рядом с JSON его gzip для клиентов с Accept-Encoding: gzip
+     */
+    private boolean gzip = true;
+
+    /**
+     * Тела меньше этого размера в байтах отдаются без сжатия
+     */
+    private int gzipMinSize = 256;
+
+    /**
+     * Время жизни тел в Redis. Ограничивает срок, на который тело может пережить инвалидацию,
+     * случившуюся между чтением значения и записью тела
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,24 @@
+package ru.polyakov.bookstore.controller.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Сверка поискового индекса узла с таблицей книг на случай пропущенных сообщений об изменениях
+ */
+@Data
+@ConfigurationProperties(prefix = "app.search")
+public class Search {
+
+    /**
+     * Как часто сравнивать число книг и время последнего изменения в базе и в индексе
+     */
+    private Duration checkInterval = Duration.ofMinutes(1);
+
+    /**
+     * Как часто перестраивать индекс безусловно. 0 — только при расхождении
+     */
+    private Duration rebuildInterval = Duration.ofHours(6);
+}
@@ -0,0 +1,38 @@
+package ru.polyakov.bookstore.controller.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Прогрев кэшей при старте и после очистки Redis
+ */
+@Data
+@ConfigurationProperties(prefix = "app.warm-up")
+public class WarmUp {
+
+    private boolean enabled = true;
+
+    private List<String> categories = new ArrayList<>();
+
+    private List<Long> bookIds = new ArrayList<>();
+
+    private int topCategories = 50;
+
+    private int topBooks = 1_000;
+
+    private int pageSize = 20;
+
+    private int parallelism = 4;
+
+    private Duration timeout = Duration.ofMinutes(1);
+
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    private Duration checkInterval = Duration.ofSeconds(30);
+
+    private long trackedSize = 10_000;
+}
@@ -1,19 +1,43 @@
 package ru.polyakov.bookstore.controller.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.polyakov.bookstore.controller.BookController;
+import ru.polyakov.bookstore.controller.ETags;
+import ru.polyakov.bookstore.dto.request.BookKeyRequest;
 import ru.polyakov.bookstore.dto.request.CreateBookRequest;
+import ru.polyakov.bookstore.dto.request.CreateBooksRequest;
+import ru.polyakov.bookstore.dto.request.FindBooksRequest;
 import ru.polyakov.bookstore.dto.request.UpdateBookRequest;
 import ru.polyakov.bookstore.dto.response.BookResponse;
 import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.dto.response.CreatedBooksResponse;
+import ru.polyakov.bookstore.dto.response.FoundBooksResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionsResponse;
+import ru.polyakov.bookstore.exception.NotFoundException;
 import ru.polyakov.bookstore.mapper.BookMapper;
+import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.NameAndAuthor;
 import ru.polyakov.bookstore.service.BookService;
+import ru.polyakov.bookstore.service.CacheWarmer;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
+import static java.lang.String.format;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 
 @RequiredArgsConstructor
 @RestController
@@ -21,37 +45,98 @@ public class BookControllerImpl implements BookController {
 
     private final BookService bookService;
     private final BookMapper mapper;
+    private final ObjectMapper objectMapper;
+    private final CacheWarmer cacheWarmer;
 
     @Override
     public ResponseEntity<BookResponse> findById(Long id) {
-        return ResponseEntity.ok(
-                mapper.toResponse(bookService.findById(id)));
+        cacheWarmer.recordBookAccess(id);
+        BookResponse book = bookService.findById(id)
+                .orElseThrow(() -> new NotFoundException(format("Книга с id %s не найдена", id)));
+        return conditional(book.getVersion(), book.getUpdatedAt(), book);
     }
 
     @Override
     public ResponseEntity<BookResponse> findByAuthorAndName(String name, String author) {
-        return ResponseEntity.ok(
-                mapper.toResponse(bookService.findByAuthorAndName(name, author)));
+        BookResponse book = bookService.findByAuthorAndName(name, author).orElseThrow(
+                () -> new NotFoundException(format("Книга под названием %s автора %s не найдена", name, author)));
+        return conditional(book.getVersion(), book.getUpdatedAt(), book);
     }
 
     @Override
-    public ResponseEntity<BooksResponse> findByCategory(String category) {
+    public ResponseEntity<FoundBooksResponse<Long>> findAllById(List<Long> ids) {
+        Map<Long, BookResponse> found = bookService.findAllById(ids);
+        return ResponseEntity.ok(toFoundBooksResponse(ids, found::get));
+    }
+
+    @Override
+    public ResponseEntity<FoundBooksResponse<BookKeyRequest>> findAllByNameAndAuthor(FindBooksRequest request) {
+        List<NameAndAuthor> keys = request.getBooks().stream().map(mapper::toNameAndAuthor).toList();
+        Map<NameAndAuthor, BookResponse> found = bookService.findAllByNameAndAuthor(keys);
         return ResponseEntity.ok(
-                new BooksResponse(mapper.toBookResponseList(bookService.findByCategory(category))));
+                toFoundBooksResponse(request.getBooks(), key -> found.get(mapper.toNameAndAuthor(key))));
+    }
+
+    @Override
+    public ResponseEntity<BooksResponse> findByCategory(String category, Long cursor, Integer size,
+                                                        String ifNoneMatch) {
+        cacheWarmer.recordCategoryAccess(category);
+        // Ревизия читается до страницы: страница может оказаться новее ETag, но не старше
+        String eTag = ETags.ofCategory(bookService.findCategoryRevision(category, size));
+        if (ETags.matchesAny(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(bookService.findByCategory(category, cursor, size));
+    }
+
+    @Override
+    public ResponseEntity<SearchBooksResponse> search(String q, Integer size) {
+        return ResponseEntity.ok(bookService.search(q, size));
+    }
+
+    @Override
+    public ResponseEntity<SuggestionsResponse> suggest(String prefix, Integer size) {
+        return ResponseEntity.ok(bookService.suggest(prefix, size));
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        ObjectWriter writer = objectMapper.writerFor(BookResponse.class);
+        StreamingResponseBody body = outputStream -> bookService.exportAll(book -> {
+            try {
+                outputStream.write(writer.writeValueAsBytes(mapper.toResponse(book)));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @Override
     public ResponseEntity<BookResponse> save(CreateBookRequest request) {
+        Book saved = bookService.save(mapper.fromCreateRequest(request), request.getCategoryName());
+        return ResponseEntity.status(CREATED)
+                .eTag(ETags.of(saved.getVersion()))
+                .body(mapper.toResponse(saved));
+    }
+
+    @Override
+    public ResponseEntity<CreatedBooksResponse> saveAll(CreateBooksRequest request) {
         return ResponseEntity.status(CREATED).body(
-                mapper.toResponse(bookService.save(
-                        mapper.fromCreateRequest(request), request.getCategoryName())));
+                new CreatedBooksResponse(mapper.toResponseList(bookService.saveAll(
+                        mapper.fromCreateRequests(request.getBooks())))));
     }
 
     @Override
-    public ResponseEntity<BookResponse> updateById(Long id, UpdateBookRequest request) {
-        return ResponseEntity.ok(
-                mapper.toResponse(bookService.updateById(id,
-                        mapper.fromUpdateRequest(request), request.getCategoryName())));
+    public ResponseEntity<BookResponse> updateById(Long id, String ifMatch, UpdateBookRequest request) {
+        Book saved = bookService.updateById(id, mapper.fromUpdateRequest(request), request.getCategoryName(),
+                ETags.expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(saved.getVersion()))
+                .body(mapper.toResponse(saved));
     }
 
     @Override
@@ -59,4 +144,34 @@ public class BookControllerImpl implements BookController {
         bookService.deleteById(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Ответ с ETag и Last-Modified из версии, прочитанной вместе с телом. If-None-Match и If-Modified-Since
+     * сверяет с ними {@code HttpEntityMethodProcessor}: при совпадении он отвечает 304, не сериализуя тело.
+     * Без версии ответ обычный.
+     */
+    private static <T> ResponseEntity<T> conditional(Long revision, Instant updatedAt, T body) {
+        if (revision == null) {
+            return ResponseEntity.ok(body);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ETags.of(revision));
+        if (updatedAt != null) {
+            response.lastModified(updatedAt);
+        }
+        return response.body(body);
+    }
+
+    private <K> FoundBooksResponse<K> toFoundBooksResponse(List<K> keys, Function<K, BookResponse> found) {
+        List<BookResponse> books = new ArrayList<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            BookResponse book = found.apply(key);
+            if (book != null) {
+                books.add(book);
+            } else {
+                missing.add(key);
+            }
+        }
+        return new FoundBooksResponse<>(books, missing);
+    }
 }
@@ -0,0 +1,20 @@
+package ru.polyakov.bookstore.controller.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+import ru.polyakov.bookstore.controller.CategoryController;
+import ru.polyakov.bookstore.dto.response.CategoryStatsResponse;
+import ru.polyakov.bookstore.service.CategoryService;
+
+@RequiredArgsConstructor
+@RestController
+public class CategoryControllerImpl implements CategoryController {
+
+    private final CategoryService categoryService;
+
+    @Override
+    public ResponseEntity<CategoryStatsResponse> getStats() {
+        return ResponseEntity.ok(categoryService.getStats());
+    }
+}
@@ -0,0 +1,202 @@
+package ru.polyakov.bookstore.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Направляет read-only транзакции на реплики, всё остальное — на основную базу.
+ * <p>
+ * Реплики выбираются по кругу среди исправных. Реплика, с которой не удалось получить соединение,
+ * которая перестала получать WAL или отстала больше допустимого, исключается до следующей успешной
+ * проверки; без исправных реплик чтения идут на основную базу. Read-only транзакция видна только
+ * после её начала, поэтому источник должен стоять за {@link LazyConnectionDataSourceProxy},
+ * который берёт соединение при первом запросе.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    /**
+     * Остановлен ли приём WAL и отставание реплики в секундах.
+     * <p>
+     * Реплика, которая перестала получать WAL, применила всё полученное, и сравнение позиций приёма
+     * и применения даёт у неё 0. Поэтому приём считается остановленным, если в {@code pg_stat_wal_receiver}
+     * нет процесса или его статус не {@code streaming}; статус виден пользователю с ролью
+     * {@code pg_read_all_stats}, без неё проверяется только наличие процесса. У такой реплики отставание
+     * считается от последней применённой транзакции. На основной базе оба значения — false и 0.
+     */
+    static final String LAG_QUERY = "select stopped, case when recovery and (stopped "
+            + "or pg_last_wal_receive_lsn() is distinct from pg_last_wal_replay_lsn()) "
+            + "then coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) else 0 end "
+            + "from (select pg_is_in_recovery() as recovery, pg_is_in_recovery() and not exists ("
+            + "select 1 from pg_stat_wal_receiver where coalesce(status, 'streaming') = 'streaming') as stopped) state";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReadYourWrites readYourWrites;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryWrites;
+    private final Counter primaryReads;
+    private final ScheduledExecutorService healthCheckExecutor;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                        ReadYourWrites readYourWrites, Duration maxLag,
+                                        Duration healthCheckInterval, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.readYourWrites = readYourWrites;
+        this.maxLag = maxLag;
+        this.primaryWrites = routed(meterRegistry, PRIMARY, "read-write");
+        this.primaryReads = routed(meterRegistry, PRIMARY, "read-only");
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource, routed(meterRegistry, name, "read-only"));
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("Исправна ли реплика и получает ли она чтения")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Отставание реплики по последней проверке")
+                    .baseUnit("seconds")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+            this.replicas.add(replica);
+        });
+        this.healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = healthCheckInterval.toMillis();
+        healthCheckExecutor.scheduleWithFixedDelay(this::checkReplicas, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.pinAfterCommit();
+            }
+            primaryWrites.increment();
+            return primary.getConnection();
+        }
+        if (!readYourWrites.pinnedToPrimary()) {
+            for (int attempt = 0; attempt < replicas.size(); attempt++) {
+                Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replica.routed.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    markDown(replica, e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Соединение с явными учётными данными всегда берётся у основной базы: реплики работают
+     * под учётными данными своих пулов, и чтение чужим пользователем на них не маршрутизируется.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryReads.increment();
+        } else {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.pinAfterCommit();
+            }
+            primaryWrites.increment();
+        }
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Проверяет соединение и отставание каждой реплики, возвращая исправные в работу.
+     */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(LAG_QUERY)) {
+                boolean found = lag.next();
+                replica.lagSeconds = found ? lag.getDouble(2) : 0;
+                if (found && lag.getBoolean(1)) {
+                    markDown(replica, "WAL receiver is not streaming");
+                } else if (replica.lagSeconds > maxLag.toMillis() / 1000.0) {
+                    markDown(replica, "lag of " + replica.lagSeconds + " s");
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Replica {} is back, routing reads to it", replica.name);
+                }
+            } catch (SQLException | RuntimeException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        healthCheckExecutor.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Replica {} is excluded from reads until the next successful check: {}", replica.name, reason);
+        }
+    }
+
+    private static Counter routed(MeterRegistry meterRegistry, String route, String access) {
+        return Counter.builder("datasource.routed.connections")
+                .description("Соединения, выданные основной базой и репликами")
+                .tag("route", route)
+                .tag("access", access)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter routed;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource, Counter routed) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.routed = routed;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.polyakov.bookstore.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Чтение своих записей: после фиксации пишущей транзакции клиент получает cookie {@link #COOKIE}
+ * со сроком, до которого его чтения идут на основную базу, а не на реплики, которые могут
+ * ещё не получить запись.
+ * <p>
+ * Срок из cookie больше окна считается подделанным и не учитывается. Вне HTTP-запроса, например
+ * в фоновых задачах и асинхронной выгрузке, привязки нет.
+ */
+public class ReadYourWrites {
+
+    public static final String COOKIE = "read-your-writes";
+
+    private static final String PINNED_UNTIL = ReadYourWrites.class.getName() + ".pinnedUntil";
+    private static final String WRITTEN = ReadYourWrites.class.getName() + ".written";
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWrites(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    /**
+     * Должны ли чтения текущего запроса идти на основную базу.
+     */
+    public boolean pinnedToPrimary() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        Long pinnedUntil = (Long) attributes.getAttribute(PINNED_UNTIL, RequestAttributes.SCOPE_REQUEST);
+        if (pinnedUntil == null) {
+            pinnedUntil = fromCookie(attributes.getRequest());
+            attributes.setAttribute(PINNED_UNTIL, pinnedUntil, RequestAttributes.SCOPE_REQUEST);
+        }
+        return clock.millis() < pinnedUntil;
+    }
+
+    /**
+     * Привязывает клиента к основной базе после фиксации текущей пишущей транзакции.
+     * Повторные вызовы в той же транзакции ничего не добавляют.
+     */
+    public void pinAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pin();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.this);
+            }
+        });
+    }
+
+    private void pin() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        long pinnedUntil = clock.millis() + window.toMillis();
+        attributes.setAttribute(PINNED_UNTIL, pinnedUntil, RequestAttributes.SCOPE_REQUEST);
+        HttpServletResponse response = attributes.getResponse();
+        if (attributes.getAttribute(WRITTEN, RequestAttributes.SCOPE_REQUEST) != null
+                || response == null || response.isCommitted()) {
+            return;
+        }
+        attributes.setAttribute(WRITTEN, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        Cookie cookie = new Cookie(COOKIE, Long.toString(pinnedUntil));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+        response.addCookie(cookie);
+    }
+
+    private long fromCookie(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return 0;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    long pinnedUntil = Long.parseLong(cookie.getValue());
+                    return pinnedUntil - clock.millis() <= window.toMillis() ? pinnedUntil : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.polyakov.bookstore.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateBooksRequest {
+
+    @Valid
+    @NotEmpty(message = "Список книг не может быть пустым")
+    @Size(max = 1000, message = "За один запрос можно создать не более 1000 книг")
+    private List<CreateBookRequest> books;
+}
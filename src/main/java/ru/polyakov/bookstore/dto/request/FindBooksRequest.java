@@ -0,0 +1,21 @@
+package ru.polyakov.bookstore.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FindBooksRequest {
+
+    @Valid
+    @NotEmpty(message = "Список книг не может быть пустым")
+    @Size(max = 100, message = "За один запрос можно найти не более 100 книг")
+    private List<BookKeyRequest> books;
+}
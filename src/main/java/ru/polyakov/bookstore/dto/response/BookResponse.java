@@ -1,15 +1,19 @@
 package ru.polyakov.bookstore.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
+import java.time.Instant;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-public class BookResponse {
+public class BookResponse implements Serializable {
 
     private Long id;
 
@@ -18,4 +22,13 @@ public class BookResponse {
     private String author;
 
     private String categoryName;
+
+    /**
+     * Версия книги, из которой прочитан ответ. Отдаётся заголовком ETag, а не в теле.
+     */
+    @JsonIgnore
+    private Long version;
+
+    @JsonIgnore
+    private Instant updatedAt;
 }
@@ -5,13 +5,16 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
 import java.util.List;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-public class BooksResponse {
+public class BooksResponse implements Serializable {
 
     private List<BookShortResponse> books;
+
+    private Long nextCursor;
 }
@@ -0,0 +1,19 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CategoryBooksResponse implements Serializable {
+
+    private String name;
+
+    private Long books;
+}
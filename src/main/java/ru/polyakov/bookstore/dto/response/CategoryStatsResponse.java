@@ -0,0 +1,26 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CategoryStatsResponse implements Serializable {
+
+    private List<CategoryBooksResponse> categories;
+
+    private long totalBooks;
+
+    /**
+     * Когда снимок прочитан из базы. Ответ кэшируется и может отставать от счётчиков на время жизни кэша
+     */
+    private Instant asOf;
+}
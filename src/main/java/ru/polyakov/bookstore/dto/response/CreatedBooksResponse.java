@@ -0,0 +1,17 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CreatedBooksResponse {
+
+    private List<BookResponse> books;
+}
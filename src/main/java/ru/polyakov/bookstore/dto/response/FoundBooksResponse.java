@@ -0,0 +1,19 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FoundBooksResponse<K> {
+
+    private List<BookResponse> books;
+
+    private List<K> missing;
+}
@@ -0,0 +1,20 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SearchBooksResponse implements Serializable {
+
+    private List<BookShortResponse> books;
+
+    private int total;
+}
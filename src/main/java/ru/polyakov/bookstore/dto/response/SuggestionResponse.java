@@ -0,0 +1,26 @@
+package ru.polyakov.bookstore.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SuggestionResponse implements Serializable {
+
+    private String text;
+
+    private Type type;
+
+    private int books;
+
+    public enum Type {
+        NAME,
+        AUTHOR
+    }
+}
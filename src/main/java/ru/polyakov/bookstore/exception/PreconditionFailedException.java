@@ -0,0 +1,7 @@
+package ru.polyakov.bookstore.exception;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class PreconditionFailedException extends RuntimeException{
+}
@@ -4,11 +4,13 @@ import org.mapstruct.Mapper;
 import org.mapstruct.MapperConfig;
 import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
+import ru.polyakov.bookstore.dto.request.BookKeyRequest;
 import ru.polyakov.bookstore.dto.request.CreateBookRequest;
 import ru.polyakov.bookstore.dto.request.UpdateBookRequest;
 import ru.polyakov.bookstore.dto.response.BookResponse;
 import ru.polyakov.bookstore.dto.response.BookShortResponse;
 import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.NameAndAuthor;
 
 import java.util.List;
 
@@ -18,10 +20,26 @@ public interface BookMapper {
 
     List<BookShortResponse> toBookResponseList(List<Book> books);
 
+    BookShortResponse toShortResponse(Book book);
+
+    @Mapping(source = "categoryName", target = "category.name")
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
     Book fromCreateRequest(CreateBookRequest request);
 
+    List<Book> fromCreateRequests(List<CreateBookRequest> requests);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "category", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
     Book fromUpdateRequest(UpdateBookRequest request);
 
+    NameAndAuthor toNameAndAuthor(BookKeyRequest request);
+
     @Mapping(source = "category.name", target = "categoryName")
     BookResponse toResponse(Book book);
+
+    List<BookResponse> toResponseList(List<Book> books);
 }
@@ -0,0 +1,6 @@
+package ru.polyakov.bookstore.model;
+
+import java.time.Instant;
+
+public record CatalogRevision(Long books, Instant updatedAt) {
+}
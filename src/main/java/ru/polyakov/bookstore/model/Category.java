@@ -1,10 +1,12 @@
 package ru.polyakov.bookstore.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,11 +23,20 @@ import java.util.List;
 @Entity
 public class Category implements Serializable {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq")
+    @SequenceGenerator(name = "category_seq", allocationSize = 50)
     private Long id;
 
     private String name;
 
+    /**
+     * Число книг категории без несвёрнутых изменений, см. {@code CategoryRepository#addBookCountDelta}.
+     * Периодически сверяется с таблицей книг.
+     */
+    @Column(insertable = false, updatable = false)
+    private Long bookCount;
+
     @ToString.Exclude
     @OneToMany(mappedBy = "category")
     private List<Book> books;
@@ -0,0 +1,11 @@
+package ru.polyakov.bookstore.model;
+
+/**
+ * Число книг категории с учётом ещё не свёрнутых изменений, см. {@code CategoryRepository#findBookCounts}.
+ */
+public interface CategoryBookCount {
+
+    String getName();
+
+    Long getBooks();
+}
@@ -0,0 +1,4 @@
+package ru.polyakov.bookstore.model;
+
+public record NameAndAuthor(String name, String author) {
+}
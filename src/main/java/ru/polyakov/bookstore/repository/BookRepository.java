@@ -1,14 +1,59 @@
 package ru.polyakov.bookstore.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
 import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.CatalogRevision;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
-    List<Book> findByCategoryName(String name);
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    int STREAM_FETCH_SIZE = 500;
+
+    @Query("select new ru.polyakov.bookstore.dto.response.BookShortResponse(b.id, b.name, b.author) "
+            + "from Book b join b.category c where c.name = :name and b.id > :cursor order by b.id")
+    List<BookShortResponse> findPageByCategoryName(String name, long cursor, Limit limit);
+
+    @Query("select new ru.polyakov.bookstore.dto.response.BookResponse(b.id, b.name, b.author, c.name, "
+            + "b.version, b.updatedAt) from Book b join b.category c where b.id = :id")
+    Optional<BookResponse> findResponseById(Long id);
+
+    @Query("select new ru.polyakov.bookstore.dto.response.BookResponse(b.id, b.name, b.author, c.name, "
+            + "b.version, b.updatedAt) from Book b join b.category c where b.name = :name and b.author = :author")
+    Optional<BookResponse> findResponseByNameAndAuthor(String name, String author);
+
+    @Query("select new ru.polyakov.bookstore.dto.response.BookResponse(b.id, b.name, b.author, c.name, "
+            + "b.version, b.updatedAt) from Book b join b.category c where b.id in :ids")
+    List<BookResponse> findResponsesByIdIn(Collection<Long> ids);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("select b from Book b join fetch b.category order by b.id")
+    Stream<Book> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select new ru.polyakov.bookstore.dto.response.BookShortResponse(b.id, b.name, b.author) "
+            + "from Book b order by b.id")
+    Stream<BookShortResponse> streamShortResponses();
+
+    @Query("select new ru.polyakov.bookstore.model.CatalogRevision(count(b), max(b.updatedAt)) from Book b")
+    CatalogRevision findCatalogRevision();
 
     Optional<Book> findByNameAndAuthor(String name, String author);
 }
@@ -0,0 +1,15 @@
+package ru.polyakov.bookstore.repository;
+
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.model.NameAndAuthor;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Книги с точно совпадающими парами названия и автора, одним запросом по {@code ux_book_name_author}.
+     */
+    List<BookResponse> findResponsesByNameAndAuthorIn(Collection<NameAndAuthor> keys);
+}
@@ -0,0 +1,43 @@
+package ru.polyakov.bookstore.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.model.NameAndAuthor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+@RequiredArgsConstructor
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private static final String SELECT_RESPONSES = "select new ru.polyakov.bookstore.dto.response.BookResponse("
+            + "b.id, b.name, b.author, c.name, b.version, b.updatedAt) from Book b join b.category c "
+            + "where (b.name, b.author) in ";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<BookResponse> findResponsesByNameAndAuthorIn(Collection<NameAndAuthor> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<NameAndAuthor> pairs = new ArrayList<>(keys);
+        // Число пар дополняется до степени двойки, чтобы разных текстов запроса было немного
+        int rowCount = pairs.size() == 1 ? 1 : Integer.highestOneBit(pairs.size() - 1) << 1;
+        StringJoiner rows = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < rowCount; i++) {
+            rows.add("(:name" + i + ", :author" + i + ")");
+        }
+        TypedQuery<BookResponse> query = entityManager.createQuery(SELECT_RESPONSES + rows, BookResponse.class);
+        for (int i = 0; i < rowCount; i++) {
+            NameAndAuthor pair = pairs.get(Math.min(i, pairs.size() - 1));
+            query.setParameter("name" + i, pair.name());
+            query.setParameter("author" + i, pair.author());
+        }
+        return query.getResultList();
+    }
+}
@@ -1,10 +1,88 @@
 package ru.polyakov.bookstore.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import ru.polyakov.bookstore.model.Category;
+import ru.polyakov.bookstore.model.CategoryBookCount;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
+
+    @Query(value = "insert into category(name) values (:name) "
+            + "on conflict (name) do update set name = excluded.name returning id", nativeQuery = true)
+    Long upsertByName(String name);
+
+    /**
+     * Записывает изменение числа книг категории. Вставка не блокирует строку категории,
+     * изменения сворачиваются в счётчик {@link #foldBookCountDeltas} в фоне.
+     */
+    @Modifying
+    @Query(value = "insert into category_book_count_delta(category_id, delta) "
+            + "select id, :delta from category where name = :name", nativeQuery = true)
+    int addBookCountDelta(String name, long delta);
+
+    /**
+     * Число книг категорий: счётчик плюс ещё не свёрнутые изменения.
+     */
+    @Query(value = "select c.name as name, c.book_count + coalesce(d.delta, 0) as books from category c "
+            + "left join (select category_id, cast(sum(delta) as bigint) as delta "
+            + "from category_book_count_delta group by category_id) d on d.category_id = c.id "
+            + "order by books desc, c.name", nativeQuery = true)
+    List<CategoryBookCount> findBookCounts();
+
+    @Query(value = "select id from category where id > :afterId order by id limit :limit", nativeQuery = true)
+    List<Long> findIdsAfter(long afterId, int limit);
+
+    /**
+     * Блокирует категории по возрастанию id. Свёртка и сверка меняют счётчики только под этой блокировкой,
+     * поэтому не видят промежуточного состояния друг друга.
+     */
+    @Query(value = "select id from category where id in (:ids) order by id for update", nativeQuery = true)
+    List<Long> lockByIds(Collection<Long> ids);
+
+    /**
+     * Блокирует по возрастанию id до limit категорий, у которых есть несвёрнутые изменения.
+     */
+    @Query(value = "select id from category where id in (select category_id from category_book_count_delta) "
+            + "order by id limit :limit for update", nativeQuery = true)
+    List<Long> lockWithBookCountDeltas(int limit);
+
+    /**
+     * Переносит изменения заблокированных категорий в их счётчики и удаляет их одним запросом,
+     * поэтому изменение не может быть учтено дважды или потеряно.
+     */
+    @Modifying
+    @Query(value = "with folded as (delete from category_book_count_delta where category_id in (:ids) "
+            + "returning category_id, delta) "
+            + "update category c set book_count = c.book_count + f.delta from ("
+            + "select category_id, sum(delta) as delta from folded group by category_id) f "
+            + "where c.id = f.category_id", nativeQuery = true)
+    int foldBookCountDeltas(Collection<Long> ids);
+
+    /**
+     * Приводит число книг заблокированных категорий к фактическому, удаляя их несвёрнутые изменения.
+     * Подсчёт книг и удаление изменений видят один снимок, поэтому изменения, зафиксированные позже,
+     * остаются на свёртку. Возвращает по значению на каждую обновлённую категорию: true, если
+     * счётчик с изменениями разошёлся с таблицей книг, false, если изменения лишь свёрнуты.
+     * <p>
+     * Пишет так же, как {@link #foldBookCountDeltas}, но без {@link Modifying}: модифицирующий запрос может
+     * вернуть только число строк, а здесь нужны строки из returning. Поэтому запрос выполняется как чтение,
+     * и вызывать его можно только в пишущей транзакции, которая держит блокировку {@link #lockByIds}:
+     * вне её Spring Data откроет для него read-only транзакцию, и запрос уйдёт на реплику.
+     */
+    @Query(value = "with pending as (delete from category_book_count_delta where category_id in (:ids) "
+            + "returning category_id, delta), "
+            + "actual as (select cc.id, cc.book_count + coalesce(sum(p.delta), 0) as counted, "
+            + "(select count(*) from book b where b.category_id = cc.id) as books "
+            + "from category cc left join pending p on p.category_id = cc.id "
+            + "where cc.id in (:ids) group by cc.id) "
+            + "update category c set book_count = actual.books from actual "
+            + "where c.id = actual.id and c.book_count <> actual.books "
+            + "returning actual.counted <> actual.books", nativeQuery = true)
+    List<Boolean> reconcileBookCounts(Collection<Long> ids);
 }
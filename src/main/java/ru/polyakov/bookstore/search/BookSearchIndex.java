@@ -0,0 +1,387 @@
+package ru.polyakov.bookstore.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.polyakov.bookstore.controller.config.Search;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionResponse;
+import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.CatalogRevision;
+import ru.polyakov.bookstore.repository.BookRepository;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Полнотекстовый поиск и подсказки по названию и автору книги в памяти узла.
+ * <p>
+ * Индекс строится при старте потоковым чтением таблицы книг и дальше обновляется изменениями
+ * из {@code BookServiceImpl} после фиксации транзакции. Изменения рассылаются остальным узлам
+ * через канал {@link #CHANNEL}. Узел, пропустивший сообщение, замечает это при периодической сверке
+ * числа книг и времени последнего изменения с базой и перестраивает индекс; правку, за которой
+ * уже пришли более поздние, исправит безусловное перестроение раз в {@code rebuild-interval}.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex implements MessageListener, SmartInitializingSingleton, DisposableBean {
+
+    public static final String CHANNEL = "book-search-index";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private InvertedIndex index = new InvertedIndex();
+    private BookSuggestions suggestions = BookSuggestions.of(index);
+
+    /**
+     * Изменения, пришедшие во время перестроения. Они применяются к новому индексу перед подменой.
+     */
+    private List<IndexUpdate> pending;
+
+    /**
+     * Время последнего изменения книги, которое отражено в индексе
+     */
+    private Instant indexedUpdatedAt;
+
+    /**
+     * Разошёлся ли индекс с базой при прошлой сверке. Перестраивается он только при втором расхождении
+     * подряд: в момент сверки изменение могло быть уже зафиксировано, но ещё не применено к индексу.
+     */
+    private volatile boolean diverged;
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * Сверка читает основную базу: отставшая реплика выглядела бы как расхождение
+     */
+    private final TransactionTemplate checkTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final Search settings;
+    private final ExecutorService mergeExecutor = Executors.newSingleThreadExecutor(
+            daemon("search-suggestions-merge"));
+    private final ScheduledExecutorService checkExecutor = Executors.newSingleThreadScheduledExecutor(
+            daemon("search-index-check"));
+
+    public BookSearchIndex(BookRepository bookRepository, PlatformTransactionManager transactionManager,
+                           StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                           ObjectMapper objectMapper, Search settings, MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.settings = settings;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.checkTemplate = new TransactionTemplate(transactionManager);
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        Gauge.builder("search.index.books", this, BookSearchIndex::books)
+                .description("Книги в поисковом индексе узла")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        rebuild();
+        long checkInterval = settings.getCheckInterval().toMillis();
+        checkExecutor.scheduleWithFixedDelay(this::checkRevisionSafely, checkInterval, checkInterval,
+                TimeUnit.MILLISECONDS);
+        long rebuildInterval = settings.getRebuildInterval().toMillis();
+        if (rebuildInterval > 0) {
+            checkExecutor.scheduleWithFixedDelay(this::rebuildSafely, rebuildInterval, rebuildInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Строит индекс заново из базы и подменяет им текущий. Поиск во время перестроения
+     * обслуживает прежний индекс, одновременные перестроения выполняются по очереди.
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        write(() -> pending = new ArrayList<>());
+        InvertedIndex built = new InvertedIndex();
+        BookSuggestions builtSuggestions;
+        CatalogRevision revision;
+        try {
+            // Ревизия читается до книг: изменения во время чтения придут через pending
+            revision = transactionTemplate.execute(status -> {
+                CatalogRevision read = bookRepository.findCatalogRevision();
+                try (Stream<BookShortResponse> books = bookRepository.streamShortResponses()) {
+                    books.forEach(book -> built.put(book.getId(), book.getName(), book.getAuthor()));
+                }
+                return read;
+            });
+            built.trim();
+            builtSuggestions = BookSuggestions.of(built);
+        } catch (RuntimeException e) {
+            write(() -> pending = null);
+            throw e;
+        }
+        write(() -> {
+            index = built;
+            suggestions = builtSuggestions;
+            indexedUpdatedAt = revision != null ? revision.updatedAt() : null;
+            pending.forEach(update -> update.applyTo(built, builtSuggestions::replace));
+            pending.forEach(this::advanceUpdatedAt);
+            pending = null;
+        });
+        diverged = false;
+        log.info("Book search index built with {} books, {} terms, {} bytes of postings and {} suggestions in {} ms",
+                built.books(), built.terms(), built.postingsSizeInBytes(), builtSuggestions.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Сравнивает число книг и время последнего изменения в базе с индексом. Индекс перестраивается,
+     * если они расходятся вторую сверку подряд.
+     */
+    public void checkRevision() {
+        CatalogRevision revision = checkTemplate.execute(status -> bookRepository.findCatalogRevision());
+        if (revision == null) {
+            return;
+        }
+        boolean matches;
+        lock.readLock().lock();
+        try {
+            // Удаление последней изменённой книги уменьшает время в базе, поэтому расхождением считается
+            // только изменение новее индекса. Микросекунда — округление времени в PostgreSQL
+            Instant indexed = indexedUpdatedAt != null ? indexedUpdatedAt.plus(1, ChronoUnit.MICROS) : null;
+            matches = revision.books() == index.books() && !isBefore(indexed, revision.updatedAt());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (matches) {
+            diverged = false;
+        } else if (!diverged) {
+            diverged = true;
+        } else {
+            log.warn("Book search index diverged from the database ({} books, last change at {}), rebuilding",
+                    revision.books(), revision.updatedAt());
+            rebuild();
+        }
+    }
+
+    /**
+     * Книги, в названии или авторе которых есть все слова запроса, по убыванию релевантности.
+     */
+    public SearchBooksResponse search(List<String> terms, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(terms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Названия и авторы, нормализованный текст которых начинается с префикса, по убыванию числа книг.
+     */
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return suggestions.suggest(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет книги в индексе этого и остальных узлов после фиксации текущей транзакции.
+     */
+    public void indexAfterCommit(Collection<Book> books) {
+        List<BookShortResponse> upserts = books.stream()
+                .map(book -> new BookShortResponse(book.getId(), book.getName(), book.getAuthor()))
+                .toList();
+        Instant updatedAt = books.stream()
+                .map(Book::getUpdatedAt)
+                .filter(Objects::nonNull)
+                .max(Instant::compareTo)
+                .orElse(null);
+        afterCommit(new IndexUpdate(upserts, List.of(), updatedAt));
+    }
+
+    /**
+     * Убирает книгу из индекса этого и остальных узлов после фиксации текущей транзакции.
+     */
+    public void removeAfterCommit(Long id) {
+        afterCommit(new IndexUpdate(List.of(), List.of(id), null));
+    }
+
+    @Override
+    public void destroy() {
+        mergeExecutor.shutdownNow();
+        checkExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            apply(objectMapper.readValue(message.getBody(), IndexUpdate.class));
+        } catch (IOException e) {
+            log.warn("Unreadable search index message skipped", e);
+        }
+    }
+
+    private void afterCommit(IndexUpdate update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyAndPublish(update);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applyAndPublish(update);
+            }
+        });
+    }
+
+    private void applyAndPublish(IndexUpdate update) {
+        apply(update);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(update));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Failed to publish search index update, other nodes keep stale entries until rebuild", e);
+        }
+    }
+
+    private void apply(IndexUpdate update) {
+        write(() -> {
+            update.applyTo(index, suggestions::replace);
+            advanceUpdatedAt(update);
+            if (pending != null) {
+                pending.add(update);
+            }
+            if (suggestions.needsMerge()) {
+                mergeSuggestions(suggestions);
+            }
+            if (index.needsCompaction()) {
+                index = index.compacted();
+            }
+        });
+    }
+
+    /**
+     * Вливает поправки подсказок в новый словарь в фоне. Если за это время индекс перестроили,
+     * результат достаётся уже заменённым подсказкам и ни на что не влияет.
+     */
+    private void mergeSuggestions(BookSuggestions target) {
+        Supplier<SuggestionDictionary> merge = target.startMerge();
+        mergeExecutor.execute(() -> {
+            long start = System.nanoTime();
+            SuggestionDictionary merged = merge.get();
+            write(() -> target.finishMerge(merged));
+            log.debug("Merged {} suggestions in {} ms", merged.size(), (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    private void advanceUpdatedAt(IndexUpdate update) {
+        if (update.updatedAt() != null && isBefore(indexedUpdatedAt, update.updatedAt())) {
+            indexedUpdatedAt = update.updatedAt();
+        }
+    }
+
+    private void checkRevisionSafely() {
+        try {
+            checkRevision();
+        } catch (RuntimeException e) {
+            log.warn("Book search index check failed, will retry in {}", settings.getCheckInterval(), e);
+        }
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Scheduled book search index rebuild failed", e);
+        }
+    }
+
+    /**
+     * Раньше ли первое время второго. Отсутствующее время — самое раннее.
+     */
+    private static boolean isBefore(Instant first, Instant second) {
+        return second != null && (first == null || first.isBefore(second));
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private int books() {
+        lock.readLock().lock();
+        try {
+            return index.books();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param updatedAt самое позднее время изменения добавленных книг, null для удалений
+     */
+    private record IndexUpdate(List<BookShortResponse> upserts, List<Long> removals, Instant updatedAt) {
+
+        /**
+         * Применяет изменение к индексу и сообщает о каждой заменённой книге: прежнюю и новую версии,
+         * null вместо отсутствующей.
+         */
+        void applyTo(InvertedIndex index, BiConsumer<BookShortResponse, BookShortResponse> replaced) {
+            removals.forEach(id -> {
+                BookShortResponse removed = index.remove(id);
+                if (removed != null) {
+                    replaced.accept(removed, null);
+                }
+            });
+            upserts.forEach(book -> {
+                BookShortResponse previous = index.put(book.getId(), book.getName(), book.getAuthor());
+                if (!book.equals(previous)) {
+                    replaced.accept(previous, book);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.polyakov.bookstore.search;
+
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static ru.polyakov.bookstore.dto.response.SuggestionResponse.Type.AUTHOR;
+import static ru.polyakov.bookstore.dto.response.SuggestionResponse.Type.NAME;
+
+/**
+ * Подсказки по префиксу названия или автора: неизменяемый {@link SuggestionDictionary}
+ * и поправки к нему от изменений книг после его построения.
+ * <p>
+ * Поправки хранятся упорядоченными по ключу и применяются при каждом запросе. Когда их набирается
+ * больше {@link #needsMerge() порога}, они замораживаются и вливаются в новый словарь вне блокировки,
+ * а новые изменения тем временем копятся в следующей порции поправок. Класс не потокобезопасен,
+ * кроме сборки словаря, которую возвращает {@link #startMerge()}.
+ */
+final class BookSuggestions {
+
+    private static final int MIN_OVERLAY_MERGE = 1024;
+
+    private SuggestionDictionary dictionary;
+    private NavigableMap<String, Suggestion> merging = new TreeMap<>();
+    private NavigableMap<String, Suggestion> overlay = new TreeMap<>();
+    private boolean mergeStarted;
+
+    private BookSuggestions(SuggestionDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    static BookSuggestions of(InvertedIndex index) {
+        Map<String, Suggestion> suggestions = new HashMap<>();
+        index.forEachBook(book -> {
+            count(suggestions, book.getName(), NAME, 1);
+            count(suggestions, book.getAuthor(), AUTHOR, 1);
+        });
+        return new BookSuggestions(new SuggestionDictionary(suggestions.values()));
+    }
+
+    /**
+     * Учитывает замену книги: previous равен null для новой книги, current — для удалённой.
+     */
+    void replace(BookShortResponse previous, BookShortResponse current) {
+        if (previous != null) {
+            count(overlay, previous.getName(), NAME, -1);
+            count(overlay, previous.getAuthor(), AUTHOR, -1);
+        }
+        if (current != null) {
+            count(overlay, current.getName(), NAME, 1);
+            count(overlay, current.getAuthor(), AUTHOR, 1);
+        }
+    }
+
+    List<SuggestionResponse> suggest(String prefix, int limit) {
+        Map<String, Suggestion> candidates = new HashMap<>();
+        dictionary.top(prefix).forEach(suggestion -> candidates.put(suggestion.key(), suggestion));
+        applyOverlay(candidates, merging, prefix);
+        applyOverlay(candidates, overlay, prefix);
+        return candidates.values().stream()
+                .filter(suggestion -> suggestion.books() > 0)
+                .sorted(Suggestion.ORDER)
+                .limit(limit)
+                .map(Suggestion::toResponse)
+                .toList();
+    }
+
+    boolean needsMerge() {
+        return !mergeStarted && overlay.size() > Math.max(MIN_OVERLAY_MERGE, dictionary.size() / 128);
+    }
+
+    /**
+     * Замораживает накопленные поправки и возвращает сборку словаря с ними. Сборка читает только
+     * неизменяемые данные, поэтому её можно выполнять без блокировки, а результат передать в
+     * {@link #finishMerge(SuggestionDictionary)}.
+     */
+    Supplier<SuggestionDictionary> startMerge() {
+        mergeStarted = true;
+        merging = overlay;
+        overlay = new TreeMap<>();
+        SuggestionDictionary base = dictionary;
+        NavigableMap<String, Suggestion> changes = merging;
+        return () -> merge(base, changes);
+    }
+
+    void finishMerge(SuggestionDictionary merged) {
+        dictionary = merged;
+        merging = new TreeMap<>();
+        mergeStarted = false;
+    }
+
+    int size() {
+        return dictionary.size();
+    }
+
+    private void applyOverlay(Map<String, Suggestion> candidates, NavigableMap<String, Suggestion> changes,
+                              String prefix) {
+        changes.subMap(prefix, prefix + Character.MAX_VALUE).values().forEach(delta -> {
+            Suggestion base = candidates.get(delta.key());
+            int books = base != null ? base.books() : dictionary.books(delta.key());
+            candidates.put(delta.key(), delta.withBooks(books + delta.books()));
+        });
+    }
+
+    private static SuggestionDictionary merge(SuggestionDictionary base, Map<String, Suggestion> changes) {
+        Map<String, Suggestion> merged = new HashMap<>();
+        base.forEach(suggestion -> merged.put(suggestion.key(), suggestion));
+        changes.values().forEach(delta -> merged.merge(delta.key(), delta,
+                (suggestion, change) -> suggestion.withBooks(suggestion.books() + change.books())));
+        return new SuggestionDictionary(merged.values().stream()
+                .filter(suggestion -> suggestion.books() > 0)
+                .toList());
+    }
+
+    private static void count(Map<String, Suggestion> suggestions, String text, SuggestionResponse.Type type,
+                              int books) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        Suggestion change = Suggestion.of(text, type, books);
+        suggestions.merge(change.key(), change, (current, added) -> {
+            int total = current.books() + added.books();
+            return total == 0 ? null : current.withBooks(total);
+        });
+    }
+}
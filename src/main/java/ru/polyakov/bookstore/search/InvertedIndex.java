@@ -0,0 +1,280 @@
+package ru.polyakov.bookstore.search;
+
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Инвертированный индекс по названию и автору книги. Книги получают внутренние номера документов
+ * по порядку добавления, поэтому списки вхождений растут только в конец и хранятся сжатыми.
+ * <p>
+ * Изменённая или удалённая книга помечается удалённой, а изменённая добавляется заново под новым номером.
+ * Когда удалённых документов становится больше живых, индекс пересобирается через {@link #compacted()}.
+ * Класс не потокобезопасен.
+ */
+final class InvertedIndex {
+
+    private static final double NAME_WEIGHT = 2;
+    private static final double AUTHOR_WEIGHT = 1;
+
+    private static final int COMPACTION_MIN_DELETED = 1024;
+
+    private final Map<String, PostingList> nameTerms = new HashMap<>();
+    private final Map<String, PostingList> authorTerms = new HashMap<>();
+    private final Map<Long, Integer> docsByBookId = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private long[] bookIds = new long[16];
+    private String[] names = new String[16];
+    private String[] authors = new String[16];
+    private int[] lengths = new int[16];
+    private int docCount;
+
+    /**
+     * Добавляет книгу или заменяет её прежнюю версию.
+     *
+     * @return прежняя версия книги или null, если книги в индексе не было
+     */
+    BookShortResponse put(long bookId, String name, String author) {
+        Integer existing = docsByBookId.get(bookId);
+        if (existing != null && Objects.equals(names[existing], name) && Objects.equals(authors[existing], author)) {
+            return book(existing);
+        }
+        BookShortResponse previous = remove(bookId);
+        int doc = docCount++;
+        ensureCapacity(docCount);
+        bookIds[doc] = bookId;
+        names[doc] = name;
+        authors[doc] = author;
+        lengths[doc] = index(nameTerms, name, doc) + index(authorTerms, author, doc);
+        docsByBookId.put(bookId, doc);
+        return previous;
+    }
+
+    /**
+     * @return удалённая книга или null, если её в индексе не было
+     */
+    BookShortResponse remove(long bookId) {
+        Integer doc = docsByBookId.remove(bookId);
+        if (doc == null) {
+            return null;
+        }
+        BookShortResponse removed = book(doc);
+        deleted.set(doc);
+        names[doc] = null;
+        authors[doc] = null;
+        return removed;
+    }
+
+    /**
+     * Книги, в названии или авторе которых есть все слова запроса. Каждое слово приносит
+     * idf, умноженный на вес поля, в котором оно найдено. Сумма делится на корень из числа слов книги,
+     * чтобы короткие точные совпадения шли выше. При равенстве раньше идёт книга с меньшим id.
+     */
+    SearchBooksResponse search(List<String> terms, int limit) {
+        List<TermPostings> termPostings = postingsByFrequency(terms);
+        if (termPostings == null) {
+            return new SearchBooksResponse(List.of(), 0);
+        }
+        TermPostings rarest = termPostings.get(0);
+        Matches matches = union(toArray(rarest.name()), toArray(rarest.author()));
+        int[] candidates = Arrays.copyOf(matches.docs, matches.size);
+        double[] scores = new double[matches.size];
+        double rarestIdf = idf(rarest);
+        for (int i = 0; i < matches.size; i++) {
+            scores[i] = matches.weights[i] * rarestIdf;
+        }
+        for (TermPostings postings : termPostings.subList(1, termPostings.size())) {
+            PostingList.Cursor name = postings.name() == null ? null : postings.name().cursor();
+            PostingList.Cursor author = postings.author() == null ? null : postings.author().cursor();
+            double idf = idf(postings);
+            int count = 0;
+            for (int i = 0; i < candidates.length; i++) {
+                int doc = candidates[i];
+                double weight = (name != null && name.advance(doc) == doc ? NAME_WEIGHT : 0)
+                        + (author != null && author.advance(doc) == doc ? AUTHOR_WEIGHT : 0);
+                if (weight > 0) {
+                    candidates[count] = doc;
+                    scores[count++] = scores[i] + weight * idf;
+                }
+            }
+            if (count == 0) {
+                return new SearchBooksResponse(List.of(), 0);
+            }
+            candidates = Arrays.copyOf(candidates, count);
+        }
+        return top(candidates, scores, limit);
+    }
+
+    boolean needsCompaction() {
+        return deleted.cardinality() > Math.max(COMPACTION_MIN_DELETED, docsByBookId.size());
+    }
+
+    /**
+     * Копия индекса только с живыми документами и без запаса в буферах.
+     */
+    InvertedIndex compacted() {
+        InvertedIndex compacted = new InvertedIndex();
+        for (int doc = deleted.nextClearBit(0); doc < docCount; doc = deleted.nextClearBit(doc + 1)) {
+            compacted.put(bookIds[doc], names[doc], authors[doc]);
+        }
+        compacted.trim();
+        return compacted;
+    }
+
+    void trim() {
+        nameTerms.values().forEach(PostingList::trim);
+        authorTerms.values().forEach(PostingList::trim);
+    }
+
+    int books() {
+        return docsByBookId.size();
+    }
+
+    void forEachBook(Consumer<BookShortResponse> consumer) {
+        for (int doc = deleted.nextClearBit(0); doc < docCount; doc = deleted.nextClearBit(doc + 1)) {
+            consumer.accept(book(doc));
+        }
+    }
+
+    int terms() {
+        return nameTerms.size() + authorTerms.size();
+    }
+
+    long postingsSizeInBytes() {
+        return nameTerms.values().stream().mapToLong(PostingList::sizeInBytes).sum()
+                + authorTerms.values().stream().mapToLong(PostingList::sizeInBytes).sum();
+    }
+
+    /**
+     * Вхождения слов в название и автора, начиная с самого редкого слова. Его вхождения распаковываются
+     * целиком, а по спискам остальных слов курсоры идут только к найденным кандидатам, перескакивая блоки.
+     * Если какого-то слова нет в индексе, возвращается null.
+     */
+    private List<TermPostings> postingsByFrequency(List<String> terms) {
+        List<TermPostings> postings = new ArrayList<>();
+        for (String term : terms) {
+            PostingList name = nameTerms.get(term);
+            PostingList author = authorTerms.get(term);
+            if (name == null && author == null) {
+                return null;
+            }
+            postings.add(new TermPostings(name, author));
+        }
+        postings.sort(Comparator.comparingInt(TermPostings::frequency));
+        return postings;
+    }
+
+    /**
+     * Редкость слова. Число документов со словом оценивается сверху суммой длин списков,
+     * чтобы не объединять их ради одной оценки.
+     */
+    private double idf(TermPostings postings) {
+        return Math.log(1 + (double) docCount / postings.frequency());
+    }
+
+    private SearchBooksResponse top(int[] candidates, double[] scores, int limit) {
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] /= Math.sqrt(Math.max(1, lengths[candidates[i]]));
+        }
+        Comparator<Integer> better = Comparator.<Integer>comparingDouble(i -> scores[i])
+                .reversed()
+                .thenComparingLong(i -> bookIds[candidates[i]]);
+        PriorityQueue<Integer> worstFirst = new PriorityQueue<>(better.reversed());
+        int total = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (deleted.get(candidates[i])) {
+                continue;
+            }
+            total++;
+            worstFirst.add(i);
+            if (worstFirst.size() > limit) {
+                worstFirst.poll();
+            }
+        }
+        List<Integer> best = new ArrayList<>(worstFirst);
+        best.sort(better);
+        List<BookShortResponse> books = best.stream()
+                .map(i -> candidates[i])
+                .map(this::book)
+                .toList();
+        return new SearchBooksResponse(books, total);
+    }
+
+    private BookShortResponse book(int doc) {
+        return new BookShortResponse(bookIds[doc], names[doc], authors[doc]);
+    }
+
+    private static int index(Map<String, PostingList> terms, String text, int doc) {
+        List<String> tokens = Tokenizer.tokens(text);
+        tokens.forEach(token -> terms.computeIfAbsent(token, t -> new PostingList()).add(doc));
+        return tokens.size();
+    }
+
+    private static int[] toArray(PostingList postings) {
+        return postings == null ? new int[0] : postings.toArray();
+    }
+
+    /**
+     * Объединяет вхождения слова в название и автора с весом поля.
+     */
+    private static Matches union(int[] name, int[] author) {
+        Matches matches = new Matches(name.length + author.length);
+        int i = 0, j = 0;
+        while (i < name.length || j < author.length) {
+            if (j == author.length || i < name.length && name[i] < author[j]) {
+                matches.add(name[i++], NAME_WEIGHT);
+            } else if (i == name.length || author[j] < name[i]) {
+                matches.add(author[j++], AUTHOR_WEIGHT);
+            } else {
+                matches.add(name[i++], NAME_WEIGHT + AUTHOR_WEIGHT);
+                j++;
+            }
+        }
+        return matches;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bookIds.length) {
+            int grown = Math.max(capacity, bookIds.length * 2);
+            bookIds = Arrays.copyOf(bookIds, grown);
+            names = Arrays.copyOf(names, grown);
+            authors = Arrays.copyOf(authors, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+        }
+    }
+
+    private record TermPostings(PostingList name, PostingList author) {
+
+        int frequency() {
+            return (name == null ? 0 : name.size()) + (author == null ? 0 : author.size());
+        }
+    }
+
+    private static final class Matches {
+
+        private final int[] docs;
+        private final double[] weights;
+        private int size;
+
+        private Matches(int capacity) {
+            docs = new int[capacity];
+            weights = new double[capacity];
+        }
+
+        private void add(int doc, double weight) {
+            docs[size] = doc;
+            weights[size++] = weight;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.polyakov.bookstore.search;
+
+import java.util.Arrays;
+
+/**
+ * Возрастающий список номеров документов, сжатый как разности соседних номеров в varint:
+ * по 7 бит в байте, старший бит означает продолжение. Соседние номера обычно близки,
+ * поэтому большинство записей занимает один байт вместо четырёх.
+ * <p>
+ * Каждые {@link #SKIP_INTERVAL} записей запоминается последний номер блока и смещение следующего,
+ * чтобы {@link Cursor#advance(int)} мог перескакивать блоки, не распаковывая их.
+ */
+final class PostingList {
+
+    static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final int SKIP_INTERVAL = 128;
+
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int size;
+    private int last = -1;
+
+    private int[] skipDocs = new int[0];
+    private int[] skipOffsets = new int[0];
+    private int skips;
+
+    /**
+     * Добавляет номер документа. Номера должны добавляться по возрастанию.
+     */
+    void add(int doc) {
+        if (doc <= last) {
+            throw new IllegalArgumentException("Document " + doc + " is not after " + last);
+        }
+        if (size > 0 && size % SKIP_INTERVAL == 0) {
+            addSkip();
+        }
+        int delta = doc - last;
+        if (bytes.length - length < 5) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[length++] = (byte) delta;
+        last = doc;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        int[] docs = new int[size];
+        Cursor cursor = cursor();
+        for (int i = 0; i < size; i++) {
+            docs[i] = cursor.next();
+        }
+        return docs;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Отбрасывает неиспользуемый запас буферов.
+     */
+    void trim() {
+        if (bytes.length > length) {
+            bytes = Arrays.copyOf(bytes, length);
+        }
+        if (skipDocs.length > skips) {
+            skipDocs = Arrays.copyOf(skipDocs, skips);
+            skipOffsets = Arrays.copyOf(skipOffsets, skips);
+        }
+    }
+
+    long sizeInBytes() {
+        return bytes.length + (long) (skipDocs.length + skipOffsets.length) * Integer.BYTES;
+    }
+
+    private void addSkip() {
+        if (skips == skipDocs.length) {
+            int grown = Math.max(4, skips * 2);
+            skipDocs = Arrays.copyOf(skipDocs, grown);
+            skipOffsets = Arrays.copyOf(skipOffsets, grown);
+        }
+        skipDocs[skips] = last;
+        skipOffsets[skips++] = length;
+    }
+
+    /**
+     * Последовательное чтение списка с переходом вперёд.
+     */
+    final class Cursor {
+
+        private int read;
+        private int position;
+        private int doc = -1;
+
+        /**
+         * Первый номер не меньше target или {@link #NO_MORE_DOCS}. Курсор не возвращается назад.
+         */
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int skip = Arrays.binarySearch(skipDocs, 0, skips, target);
+            int lastSkipped = (skip >= 0 ? skip : -skip - 1) - 1;
+            if (lastSkipped >= 0 && (lastSkipped + 1) * SKIP_INTERVAL > read) {
+                doc = skipDocs[lastSkipped];
+                position = skipOffsets[lastSkipped];
+                read = (lastSkipped + 1) * SKIP_INTERVAL;
+            }
+            while (doc < target) {
+                if (next() == NO_MORE_DOCS) {
+                    break;
+                }
+            }
+            return doc;
+        }
+
+        private int next() {
+            if (read == size) {
+                return doc = NO_MORE_DOCS;
+            }
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            read++;
+            return doc += delta;
+        }
+    }
+}
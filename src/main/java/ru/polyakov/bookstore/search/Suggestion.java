@@ -0,0 +1,37 @@
+package ru.polyakov.bookstore.search;
+
+import ru.polyakov.bookstore.dto.response.SuggestionResponse;
+
+import java.util.Comparator;
+
+/**
+ * Подсказка: название или автор и число книг с ними.
+ *
+ * @param key ключ сортировки: нормализованный текст, тип и исходный текст через символ \0.
+ *            Начинается с нормализованного текста, поэтому подсказки по префиксу лежат подряд
+ */
+record Suggestion(String key, String text, SuggestionResponse.Type type, int books) {
+
+    /**
+     * Сначала подсказки с большим числом книг, затем более короткие, затем по алфавиту.
+     */
+    static final Comparator<Suggestion> ORDER = Comparator.comparingInt((Suggestion suggestion) -> -suggestion.books())
+            .thenComparingInt(suggestion -> suggestion.text().length())
+            .thenComparing(Suggestion::key, Comparator.naturalOrder());
+
+    static Suggestion of(String text, SuggestionResponse.Type type, int books) {
+        return new Suggestion(key(text, type), text, type, books);
+    }
+
+    static String key(String text, SuggestionResponse.Type type) {
+        return Tokenizer.normalize(text) + '\0' + type.ordinal() + '\0' + text;
+    }
+
+    Suggestion withBooks(int books) {
+        return new Suggestion(key, text, type, books);
+    }
+
+    SuggestionResponse toResponse() {
+        return new SuggestionResponse(text, type, books);
+    }
+}
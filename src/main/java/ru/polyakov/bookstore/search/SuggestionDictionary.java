@@ -0,0 +1,127 @@
+package ru.polyakov.bookstore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Неизменяемый словарь подсказок: массив, отсортированный по ключу, и заранее посчитанные
+ * лучшие подсказки для каждого узла неявного префиксного дерева над этим массивом.
+ * <p>
+ * Лучшие подсказки хранятся только для префиксов, под которыми не меньше {@link #SCAN_THRESHOLD} подсказок.
+ * Для остальных префиксов подходящий отрезок массива находится двоичным поиском и короток,
+ * поэтому его дешевле просмотреть целиком, чем хранить для него результат.
+ */
+final class SuggestionDictionary {
+
+    /**
+     * Сколько лучших подсказок хранится на узел. Больше, чем отдаётся за запрос, чтобы после
+     * поправок из {@link BookSuggestions} было чем заменить подсказки, у которых убыло книг.
+     */
+    static final int STORED_TOP = 20;
+
+    private static final int SCAN_THRESHOLD = 256;
+
+    private final Suggestion[] suggestions;
+    private final String[] keys;
+    private final Map<String, List<Suggestion>> topByPrefix = new HashMap<>();
+
+    SuggestionDictionary(Collection<Suggestion> suggestions) {
+        this.suggestions = suggestions.stream()
+                .sorted(Comparator.comparing(Suggestion::key))
+                .toArray(Suggestion[]::new);
+        this.keys = Arrays.stream(this.suggestions).map(Suggestion::key).toArray(String[]::new);
+        precompute(0, 0, keys.length);
+    }
+
+    /**
+     * До {@link #STORED_TOP} лучших подсказок, нормализованный текст которых начинается с префикса.
+     */
+    List<Suggestion> top(String prefix) {
+        List<Suggestion> stored = topByPrefix.get(prefix);
+        if (stored != null) {
+            return stored;
+        }
+        return top(lowerBound(prefix), lowerBound(prefix + Character.MAX_VALUE));
+    }
+
+    /**
+     * Число книг у подсказки с этим ключом или 0, если её нет.
+     */
+    int books(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? 0 : suggestions[index].books();
+    }
+
+    int size() {
+        return suggestions.length;
+    }
+
+    int precomputedPrefixes() {
+        return topByPrefix.size();
+    }
+
+    void forEach(Consumer<Suggestion> consumer) {
+        Arrays.stream(suggestions).forEach(consumer);
+    }
+
+    /**
+     * Обходит узлы дерева: отрезок [from, to) содержит ключи с общим префиксом длины depth,
+     * дочерние узлы отличаются символом на позиции depth. Лучшие подсказки узла собираются
+     * из лучших подсказок дочерних узлов, поэтому каждая подсказка просматривается один раз.
+     */
+    private List<Suggestion> precompute(int depth, int from, int to) {
+        if (to - from < SCAN_THRESHOLD) {
+            return top(from, to);
+        }
+        List<Suggestion> candidates = new ArrayList<>();
+        int start = from;
+        while (start < to && keys[start].length() == depth) {
+            candidates.add(suggestions[start++]);
+        }
+        while (start < to) {
+            char symbol = keys[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && keys[end].charAt(depth) == symbol) {
+                end++;
+            }
+            candidates.addAll(precompute(depth + 1, start, end));
+            start = end;
+        }
+        candidates.sort(Suggestion.ORDER);
+        List<Suggestion> top = List.copyOf(candidates.subList(0, Math.min(STORED_TOP, candidates.size())));
+        if (depth > 0) {
+            topByPrefix.put(keys[from].substring(0, depth), top);
+        }
+        return top;
+    }
+
+    private List<Suggestion> top(int from, int to) {
+        if (to - from <= STORED_TOP) {
+            Suggestion[] top = Arrays.copyOfRange(suggestions, from, to);
+            Arrays.sort(top, Suggestion.ORDER);
+            return List.of(top);
+        }
+        PriorityQueue<Suggestion> worstFirst = new PriorityQueue<>(Suggestion.ORDER.reversed());
+        for (int i = from; i < to; i++) {
+            worstFirst.add(suggestions[i]);
+            if (worstFirst.size() > STORED_TOP) {
+                worstFirst.poll();
+            }
+        }
+        List<Suggestion> top = new ArrayList<>(worstFirst);
+        top.sort(Suggestion.ORDER);
+        return List.copyOf(top);
+    }
+
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -index - 1 : index;
+    }
+}
@@ -1,20 +1,50 @@
 package ru.polyakov.bookstore.service;
 
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionsResponse;
 import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.NameAndAuthor;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
 
-    Book findById(Long id);
+    Optional<BookResponse> findById(Long id);
 
-    Book findByAuthorAndName(String name, String author);
+    Optional<BookResponse> findByAuthorAndName(String name, String author);
 
-    List<Book> findByCategory(String name);
+    Map<Long, BookResponse> findAllById(Collection<Long> ids);
+
+    Map<NameAndAuthor, BookResponse> findAllByNameAndAuthor(Collection<NameAndAuthor> keys);
+
+    BooksResponse findByCategory(String name, long cursor, int size);
+
+    /**
+     * Ревизия страниц категории для ETag. Проверяет размер страницы так же, как {@link #findByCategory}.
+     */
+    String findCategoryRevision(String name, int size);
+
+    SearchBooksResponse search(String query, int size);
+
+    SuggestionsResponse suggest(String prefix, int size);
+
+    void exportAll(Consumer<Book> consumer);
 
     Book save(Book request, String categoryName);
 
-    Book updateById(Long id, Book request, String categoryName);
+    List<Book> saveAll(List<Book> books);
+
+    /**
+     * Обновляет книгу. Если expectedVersion не null, а версия книги другая, бросает
+     * {@link ru.polyakov.bookstore.exception.PreconditionFailedException}.
+     */
+    Book updateById(Long id, Book request, String categoryName, Long expectedVersion);
 
     void deleteById(Long id);
 }
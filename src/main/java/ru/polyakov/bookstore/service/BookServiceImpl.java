@@ -1,22 +1,55 @@
 package ru.polyakov.bookstore.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheInvalidator;
+import ru.polyakov.bookstore.cache.CacheKeys;
+import ru.polyakov.bookstore.cache.TwoLevelCache;
+import ru.polyakov.bookstore.cache.TwoLevelCacheManager;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionsResponse;
 import ru.polyakov.bookstore.exception.BadRequestException;
 import ru.polyakov.bookstore.exception.NotFoundException;
+import ru.polyakov.bookstore.exception.PreconditionFailedException;
 import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.NameAndAuthor;
 import ru.polyakov.bookstore.model.Category;
 import ru.polyakov.bookstore.repository.BookRepository;
 import ru.polyakov.bookstore.repository.CategoryRepository;
+import ru.polyakov.bookstore.search.BookSearchIndex;
+import ru.polyakov.bookstore.search.Tokenizer;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import static java.lang.String.format;
 
@@ -25,74 +58,302 @@ import static java.lang.String.format;
 @RequiredArgsConstructor
 public class BookServiceImpl implements BookService{
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_LOOKUP_SIZE = 100;
+    private static final int MAX_SEARCH_TERMS = 10;
+    private static final int MAX_SUGGESTIONS = 10;
+    private static final String BOOK_NAME_AUTHOR_CONSTRAINT = "ux_book_name_author";
+
     private final BookRepository bookRepository;
     private final CategoryRepository categoryRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final TwoLevelCacheManager cacheManager;
     private final EntityUpdater updater;
+    private final EntityManager entityManager;
+    private final CategoryRegistry categoryRegistry;
+    private final CacheInvalidator cacheInvalidator;
+    private final CacheGenerations cacheGenerations;
+    private final BookSearchIndex searchIndex;
+    private final PlatformTransactionManager transactionManager;
+
+    @Cacheable(cacheNames = "book", key = "#id", sync = true)
+    @Transactional(readOnly = true)
+    @Override
+    public Optional<BookResponse> findById(Long id) {
+        return bookRepository.findResponseById(id);
+    }
+
+    @Cacheable(cacheNames = "bookByNameAndAuthor", sync = true,
+            key = "T(ru.polyakov.bookstore.cache.CacheKeys).nameAndAuthor(#name, #author)")
+    @Transactional(readOnly = true)
+    @Override
+    public Optional<BookResponse> findByAuthorAndName(String name, String author) {
+        return bookRepository.findResponseByNameAndAuthor(name, author);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<Long, BookResponse> findAllById(Collection<Long> ids) {
+        checkLookupSize(ids.size());
+        TwoLevelCache cache = cacheManager.getCache("book");
+        Map<Long, Object> cached = cache.getAll(ids);
+
+        List<Long> misses = ids.stream().filter(id -> !cached.containsKey(id)).distinct().toList();
+        if (!misses.isEmpty()) {
+            Map<Long, BookResponse> loaded = new HashMap<>();
+            misses.forEach(id -> loaded.put(id, null));
+            bookRepository.findResponsesByIdIn(misses).forEach(book -> loaded.put(book.getId(), book));
+            cache.putAll(loaded);
+            cached.putAll(loaded);
+        }
+        return foundOnly(cached);
+    }
 
-    @Cacheable(cacheNames = "book", key = "#id")
     @Transactional(readOnly = true)
     @Override
-    public Book findById(Long id) {
-        return findByIdAndCheck(id);
+    public Map<NameAndAuthor, BookResponse> findAllByNameAndAuthor(Collection<NameAndAuthor> keys) {
+        checkLookupSize(keys.size());
+        TwoLevelCache cache = cacheManager.getCache("bookByNameAndAuthor");
+        Map<String, NameAndAuthor> byCacheKey = new HashMap<>();
+        keys.forEach(key -> byCacheKey.put(CacheKeys.nameAndAuthor(key.name(), key.author()), key));
+
+        Map<NameAndAuthor, Object> cached = new HashMap<>();
+        cache.getAll(byCacheKey.keySet()).forEach((cacheKey, book) -> cached.put(byCacheKey.get(cacheKey), book));
+
+        Set<NameAndAuthor> misses = keys.stream().filter(key -> !cached.containsKey(key)).collect(toSet());
+        if (!misses.isEmpty()) {
+            Map<NameAndAuthor, BookResponse> loaded = new HashMap<>();
+            misses.forEach(key -> loaded.put(key, null));
+            bookRepository.findResponsesByNameAndAuthorIn(misses)
+                    .forEach(book -> loaded.put(new NameAndAuthor(book.getName(), book.getAuthor()), book));
+            Map<String, BookResponse> byKey = new HashMap<>();
+            loaded.forEach((key, book) -> byKey.put(CacheKeys.nameAndAuthor(key.name(), key.author()), book));
+            cache.putAll(byKey);
+            cached.putAll(loaded);
+        }
+        return foundOnly(cached);
     }
 
-    @Cacheable(cacheNames = "bookByNameAndAuthor", key = "#name + #author")
+    @Cacheable(cacheNames = "books", sync = true,
+            key = "@cacheGenerations.categoryPageKey(#categoryName, #cursor, #size)")
     @Transactional(readOnly = true)
     @Override
-    public Book findByAuthorAndName(String name, String author) {
-        return bookRepository.findByNameAndAuthor(name, author).orElseThrow(
-                () -> new NotFoundException(format("Книга под названием %s автора %s не найдена", name, author)));
+    public BooksResponse findByCategory(String categoryName, long cursor, int size) {
+        checkPageSize(size);
+        List<BookShortResponse> books = bookRepository.findPageByCategoryName(categoryName, cursor, Limit.of(size + 1));
+        if (books.size() <= size) {
+            return new BooksResponse(books, null);
+        }
+        List<BookShortResponse> page = new ArrayList<>(books.subList(0, size));
+        return new BooksResponse(page, page.get(size - 1).getId());
+    }
+
+    @Override
+    public String findCategoryRevision(String categoryName, int size) {
+        checkPageSize(size);
+        return cacheGenerations.categoryRevision(categoryName);
+    }
+
+    @Override
+    public SearchBooksResponse search(String query, int size) {
+        checkPageSize(size);
+        List<String> terms = Tokenizer.tokens(query);
+        if (terms.isEmpty() || terms.size() > MAX_SEARCH_TERMS) {
+            throw new BadRequestException(
+                    format("Поисковый запрос должен содержать от 1 до %s слов", MAX_SEARCH_TERMS));
+        }
+        return searchIndex.search(terms, size);
+    }
+
+    @Override
+    public SuggestionsResponse suggest(String prefix, int size) {
+        if (size < 1 || size > MAX_SUGGESTIONS) {
+            throw new BadRequestException(format("Число подсказок должно быть от 1 до %s", MAX_SUGGESTIONS));
+        }
+        String normalized = Tokenizer.normalize(prefix);
+        if (normalized.isEmpty()) {
+            throw new BadRequestException("Префикс не должен быть пустым");
+        }
+        return new SuggestionsResponse(searchIndex.suggest(normalized, size));
     }
 
-    @Cacheable(cacheNames = "books", key = "#categoryName")
     @Transactional(readOnly = true)
     @Override
-    public List<Book> findByCategory(String categoryName) {
-        return bookRepository.findByCategoryName(categoryName);
+    public void exportAll(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            int[] exported = {0};
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+                if (++exported[0] % BookRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            });
+        }
     }
 
-    @CacheEvict(cacheNames = "books", key = "#categoryName")
     @Transactional
     @Override
     public Book save(Book request, String categoryName) {
-        checkForUniqueBook(request.getName(), request.getAuthor());
         Category category = findOrCreateCategory(categoryName);
         request.setCategory(category);
-        return bookRepository.save(request);
+        Book saved = saveUnique(request);
+        categoriesChanged(Map.of(categoryName, 1L));
+        evictMissingLookups(List.of(saved));
+        searchIndex.indexAfterCommit(List.of(saved));
+        return saved;
+    }
+
+    @Transactional
+    @Override
+    public List<Book> saveAll(List<Book> books) {
+        checkForUniqueBooks(books);
+        Map<String, Category> categories = findOrCreateCategories(books.stream()
+                .map(book -> book.getCategory().getName())
+                .collect(toSet()));
+        books.forEach(book -> book.setCategory(categories.get(book.getCategory().getName())));
+        List<Book> saved;
+        try {
+            saved = bookRepository.saveAllAndFlush(books);
+        } catch (DataIntegrityViolationException e) {
+            if (isViolationOf(e, BOOK_NAME_AUTHOR_CONSTRAINT)) {
+                throw new BadRequestException(existingBook(books)
+                        .map(book -> format("Книга под названием %s автора %s уже есть", book.getName(),
+                                book.getAuthor()))
+                        .orElse("Одна из книг уже есть"), e);
+            }
+            throw e;
+        }
+        categoriesChanged(saved.stream().collect(groupingBy(book -> book.getCategory().getName(), counting())));
+        evictMissingLookups(saved);
+        searchIndex.indexAfterCommit(saved);
+        return saved;
     }
 
-    @CacheEvict(cacheNames = "book", key = "#id")
     @Transactional
     @Override
-    public Book updateById(Long id, Book request, String categoryName) {
-        checkForUniqueBook(request.getName(), request.getAuthor());
+    public Book updateById(Long id, Book request, String categoryName, Long expectedVersion) {
         Book fromDb = findByIdAndCheck(id);
+        if (expectedVersion != null && !expectedVersion.equals(fromDb.getVersion())) {
+            throw new PreconditionFailedException(versionMismatch(id));
+        }
+        Map<String, Long> bookCountDeltas = new HashMap<>(Map.of(fromDb.getCategory().getName(), 0L));
+        Set<String> lookupKeys = new HashSet<>(Set.of(CacheKeys.nameAndAuthor(fromDb.getName(), fromDb.getAuthor())));
         if(categoryName != null) {
             Category category = findOrCreateCategory(categoryName);
+            bookCountDeltas.merge(fromDb.getCategory().getName(), -1L, Long::sum);
+            bookCountDeltas.merge(categoryName, 1L, Long::sum);
             fromDb.setCategory(category);
-        } else {
-            redisTemplate.delete(format("books::%s", fromDb.getCategory().getName()));
         }
-        String key = format("bookByNameAndAuthor::%s%s", fromDb.getName(), fromDb.getAuthor());
-        redisTemplate.delete(key);
         updater.update(fromDb, request);
-        return bookRepository.save(fromDb);
+        Book saved;
+        try {
+            saved = saveUnique(fromDb);
+        } catch (OptimisticLockingFailureException e) {
+            if (expectedVersion != null) {
+                throw new PreconditionFailedException(versionMismatch(id), e);
+            }
+            throw e;
+        }
+        lookupKeys.add(CacheKeys.nameAndAuthor(saved.getName(), saved.getAuthor()));
+        cacheInvalidator.evict("book", id);
+        cacheInvalidator.evictAll("bookByNameAndAuthor", lookupKeys);
+        categoriesChanged(bookCountDeltas);
+        searchIndex.indexAfterCommit(List.of(saved));
+        return saved;
     }
 
-    @CacheEvict(cacheNames = "book", key = "#id")
     @Transactional
     @Override
     public void deleteById(Long id) {
         Book book = findByIdAndCheck(id);
-        redisTemplate.delete(format("bookByNameAndAuthor::%s%s", book.getName(), book.getAuthor()));
-        redisTemplate.delete(format("books::%s", book.getCategory().getName()));
+        cacheInvalidator.evict("book", id);
+        cacheInvalidator.evict("bookByNameAndAuthor", CacheKeys.nameAndAuthor(book.getName(), book.getAuthor()));
+        categoriesChanged(Map.of(book.getCategory().getName(), -1L));
+        searchIndex.removeAfterCommit(id);
         bookRepository.delete(book);
     }
 
+    /**
+     * Записывает изменения числа книг категорий и сбрасывает их страницы в кэше после фиксации.
+     * Строки категорий не блокируются: изменения сворачивает в счётчики {@code CategoryStatsReconciler}.
+     *
+     * @param bookCountDeltas изменение числа книг по названиям категорий, 0 для изменений без переноса книг
+     */
+    private void categoriesChanged(Map<String, Long> bookCountDeltas) {
+        bookCountDeltas.forEach((categoryName, delta) -> {
+            if (delta != 0) {
+                categoryRepository.addBookCountDelta(categoryName, delta);
+            }
+        });
+        cacheInvalidator.bumpCategories(bookCountDeltas.keySet());
+    }
+
+    private static String versionMismatch(Long id) {
+        return format("Книга с id %s изменилась после получения указанной в If-Match версии", id);
+    }
+
+    /**
+     * Удаляет отрицательные записи о книгах, которые появились под этими id или названием и автором.
+     */
+    private void evictMissingLookups(List<Book> books) {
+        cacheInvalidator.evictAll("book", books.stream().map(Book::getId).toList());
+        cacheInvalidator.evictAll("bookByNameAndAuthor", books.stream()
+                .map(book -> CacheKeys.nameAndAuthor(book.getName(), book.getAuthor()))
+                .toList());
+    }
+
+    /**
+     * Отбрасывает ключи, для которых книги нет: они остаются в кэше как отрицательные записи.
+     */
+    private static <K> Map<K, BookResponse> foundOnly(Map<K, Object> cached) {
+        Map<K, BookResponse> found = new HashMap<>();
+        cached.forEach((key, book) -> {
+            if (book != null) {
+                found.put(key, (BookResponse) book);
+            }
+        });
+        return found;
+    }
+
+    private void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException(format("Размер страницы должен быть от 1 до %s", MAX_PAGE_SIZE));
+        }
+    }
+
+    private void checkLookupSize(int size) {
+        if (size > MAX_LOOKUP_SIZE) {
+            throw new BadRequestException(format("За один запрос можно найти не более %s книг", MAX_LOOKUP_SIZE));
+        }
+    }
+
     private Category findOrCreateCategory(String categoryName) {
-        return categoryRepository.findByName(categoryName)
-                .orElseGet(() -> categoryRepository.save(Category.builder().name(categoryName).build()));
+        return categoryRegistry.find(categoryName).orElseGet(() -> {
+            Long id = categoryRepository.upsertByName(categoryName);
+            categoryRegistry.registerAfterCommit(categoryName, id);
+            return Category.builder().id(id).name(categoryName).build();
+        });
+    }
+
+    private Map<String, Category> findOrCreateCategories(Set<String> categoryNames) {
+        return categoryNames.stream().collect(toMap(Function.identity(), this::findOrCreateCategory));
+    }
+
+    private Book saveUnique(Book book) {
+        try {
+            return bookRepository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            if (isViolationOf(e, BOOK_NAME_AUTHOR_CONSTRAINT)) {
+                throw new BadRequestException(
+                        format("Книга под названием %s автора %s уже есть", book.getName(), book.getAuthor()), e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isViolationOf(DataIntegrityViolationException e, String constraintName) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && constraintName.equalsIgnoreCase(violation.getConstraintName());
     }
 
     private Book findByIdAndCheck(Long id) {
@@ -100,10 +361,37 @@ public class BookServiceImpl implements BookService{
                 .orElseThrow(() -> new NotFoundException(format("Книга с id %s не найдена", id)));
     }
 
-    private void checkForUniqueBook(String name, String author) {
-        Optional<Book> book = bookRepository.findByNameAndAuthor(name, author);
-        if(book.isPresent()) {
-            throw new BadRequestException(format("Книга под названием %s автора %s уже есть", name, author));
+    /**
+     * Проверяет, что книги запроса не повторяют друг друга. Совпадения с уже сохранёнными книгами
+     * находит ограничение {@code ux_book_name_author} при вставке.
+     */
+    private void checkForUniqueBooks(List<Book> books) {
+        Set<List<String>> requested = new HashSet<>();
+        for (Book book : books) {
+            if (!requested.add(List.of(book.getName(), book.getAuthor()))) {
+                throw new BadRequestException(format("Книга под названием %s автора %s указана в запросе несколько раз",
+                        book.getName(), book.getAuthor()));
+            }
+        }
+    }
+
+    /**
+     * Уже сохранённая книга из запроса после нарушения {@code ux_book_name_author}. Текущая транзакция
+     * после ошибки прервана, поэтому книги ищутся в новой, на основной базе. Пусто, если книгу,
+     * с которой случился конфликт, успели удалить.
+     */
+    private Optional<BookResponse> existingBook(List<Book> books) {
+        TransactionTemplate lookup = new TransactionTemplate(transactionManager);
+        lookup.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<NameAndAuthor> keys = books.stream()
+                .map(book -> new NameAndAuthor(book.getName(), book.getAuthor()))
+                .toList();
+        try {
+            List<BookResponse> existing = lookup.execute(status -> bookRepository.findResponsesByNameAndAuthorIn(keys));
+            return existing == null ? Optional.empty() : existing.stream().findFirst();
+        } catch (RuntimeException e) {
+            log.warn("Failed to find the book that violated {}", BOOK_NAME_AUTHOR_CONSTRAINT, e);
+            return Optional.empty();
         }
     }
 }
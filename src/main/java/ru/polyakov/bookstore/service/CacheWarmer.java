@@ -0,0 +1,228 @@
+package ru.polyakov.bookstore.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import ru.polyakov.bookstore.controller.config.WarmUp;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Прогрев кэшей первыми страницами самых запрашиваемых категорий и самыми запрашиваемыми книгами.
+ * <p>
+ * Частоты обращений копятся в памяти узла и периодически сбрасываются в общие ZSET в Redis.
+ * Прогрев выполняется до того, как приложение сообщит о готовности, и повторяется,
+ * если из Redis пропал ключ-метка прошлого прогрева, то есть Redis перезапустили или очистили.
+ * Учитываются только известные категории, а до сброса копится не больше {@code tracked-size} разных ключей.
+ * Повторный прогрев идёт в своём потоке и не задерживает остальные задачи общего планировщика.
+ */
+@Slf4j
+@Component
+public class CacheWarmer implements ApplicationRunner, DisposableBean {
+
+    static final String CATEGORY_ACCESS_KEY = "warm-up:categories";
+    static final String BOOK_ACCESS_KEY = "warm-up:books";
+    static final String SENTINEL_KEY = "warm-up:sentinel";
+
+    private static final int LOOKUP_CHUNK_SIZE = 100;
+
+    private final Map<String, LongAdder> categoryAccesses = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bookAccesses = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final BookService bookService;
+    private final CategoryRegistry categoryRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final TaskScheduler taskScheduler;
+    private final WarmUp settings;
+    private final ScheduledExecutorService warmUpExecutor;
+
+    public CacheWarmer(BookService bookService, CategoryRegistry categoryRegistry, StringRedisTemplate redisTemplate,
+                       TaskScheduler taskScheduler, WarmUp settings) {
+        this.bookService = bookService;
+        this.categoryRegistry = categoryRegistry;
+        this.redisTemplate = redisTemplate;
+        this.taskScheduler = taskScheduler;
+        this.settings = settings;
+        this.warmUpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        warmUp();
+        taskScheduler.scheduleWithFixedDelay(this::flushAccessCounts, settings.getFlushInterval());
+        long interval = settings.getCheckInterval().toMillis();
+        warmUpExecutor.scheduleWithFixedDelay(this::warmUpIfFlushed, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        warmUpExecutor.shutdownNow();
+    }
+
+    public void recordCategoryAccess(String categoryName) {
+        if (categoryRegistry.find(categoryName).isPresent()) {
+            record(categoryAccesses, categoryName);
+        }
+    }
+
+    public void recordBookAccess(Long id) {
+        record(bookAccesses, String.valueOf(id));
+    }
+
+    /**
+     * Сбрасывает накопленные частоты обращений в Redis одним конвейером и обрезает рейтинги
+     * до {@code tracked-size} самых частых элементов.
+     */
+    public void flushAccessCounts() {
+        Map<String, Long> categories = drain(categoryAccesses);
+        Map<String, Long> books = drain(bookAccesses);
+        if (categories.isEmpty() && books.isEmpty()) {
+            return;
+        }
+        long trackedSize = settings.getTrackedSize();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection commands = (StringRedisConnection) connection;
+                categories.forEach((name, count) -> commands.zIncrBy(CATEGORY_ACCESS_KEY, count, name));
+                books.forEach((id, count) -> commands.zIncrBy(BOOK_ACCESS_KEY, count, id));
+                commands.zRemRange(CATEGORY_ACCESS_KEY, 0, -trackedSize - 1);
+                commands.zRemRange(BOOK_ACCESS_KEY, 0, -trackedSize - 1);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush access counts, {} categories and {} books skipped",
+                    categories.size(), books.size(), e);
+        }
+    }
+
+    /**
+     * Загружает в кэши первые страницы категорий и книги из настроенных списков,
+     * дополненных самыми частыми по обращениям. Параллельно выполняется не больше {@code parallelism} запросов.
+     */
+    public void warmUp() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(settings.getParallelism());
+        long started = System.nanoTime();
+        try {
+            flushAccessCounts();
+            List<String> categories = top(settings.getCategories(), CATEGORY_ACCESS_KEY, settings.getTopCategories());
+            List<Long> ids = top(settings.getBookIds().stream().map(String::valueOf).toList(),
+                    BOOK_ACCESS_KEY, settings.getTopBooks()).stream().map(Long::valueOf).toList();
+
+            List<Future<?>> tasks = new ArrayList<>();
+            categories.forEach(category -> tasks.add(executor.submit(
+                    () -> bookService.findByCategory(category, 0L, settings.getPageSize()))));
+            for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()));
+                tasks.add(executor.submit(() -> bookService.findAllById(chunk)));
+            }
+            int failed = await(tasks, System.nanoTime() + settings.getTimeout().toNanos());
+
+            redisTemplate.opsForValue().set(SENTINEL_KEY, Instant.now().toString());
+            log.info("Caches warmed up with {} categories and {} books in {} ms, {} tasks failed",
+                    categories.size(), ids.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), failed);
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up failed, caches will be filled by requests", e);
+        } finally {
+            executor.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    private void warmUpIfFlushed() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(SENTINEL_KEY))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Redis is unavailable, warm-up check skipped", e);
+            return;
+        }
+        log.info("Warm-up sentinel is missing in Redis, warming up caches again");
+        warmUp();
+    }
+
+    private List<String> top(List<String> configured, String accessKey, int limit) {
+        Set<String> result = new LinkedHashSet<>(configured);
+        if (result.size() < limit) {
+            Set<String> frequent = redisTemplate.opsForZSet().reverseRange(accessKey, 0, limit - 1);
+            if (frequent != null) {
+                frequent.stream().limit(limit - result.size()).forEach(result::add);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private static int await(List<Future<?>> tasks, long deadline) {
+        int failed = 0;
+        for (Future<?> task : tasks) {
+            try {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                failed++;
+                log.debug("Warm-up task failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failed + 1;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Увеличивает частоту ключа. Новые ключи сверх {@code tracked-size} до следующего сброса не учитываются.
+     */
+    private void record(Map<String, LongAdder> accesses, String key) {
+        LongAdder count = accesses.get(key);
+        if (count == null) {
+            if (accesses.size() >= settings.getTrackedSize()) {
+                return;
+            }
+            count = accesses.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private static Map<String, Long> drain(Map<String, LongAdder> accesses) {
+        Map<String, Long> drained = new HashMap<>();
+        for (String key : accesses.keySet()) {
+            LongAdder count = accesses.remove(key);
+            if (count != null) {
+                drained.put(key, count.sum());
+            }
+        }
+        return drained;
+    }
+}
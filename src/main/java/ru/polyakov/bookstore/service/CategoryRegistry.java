@@ -0,0 +1,128 @@
+package ru.polyakov.bookstore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.polyakov.bookstore.model.Category;
+import ru.polyakov.bookstore.repository.CategoryRepository;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Справочник категорий name → id в памяти узла. Категории почти не меняются, поэтому
+ * справочник хранится как неизменяемый снимок, который целиком заменяется при добавлении категории.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryRegistry implements MessageListener, SmartInitializingSingleton {
+
+    public static final String CHANNEL = "category-registry";
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(Map.of(), Map.of()));
+
+    private final CategoryRepository categoryRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        reload();
+    }
+
+    public void reload() {
+        Map<String, Long> idsByName = new HashMap<>();
+        Map<Long, String> namesById = new HashMap<>();
+        categoryRepository.findAll().forEach(category -> {
+            idsByName.put(category.getName(), category.getId());
+            namesById.put(category.getId(), category.getName());
+        });
+        snapshot.set(new Snapshot(Map.copyOf(idsByName), Map.copyOf(namesById)));
+        log.info("Category registry loaded with {} categories", idsByName.size());
+    }
+
+    /**
+     * Возвращает отсоединённую ссылку на категорию с id и названием. Её можно назначить книге
+     * без загрузки категории из базы.
+     */
+    public Optional<Category> find(String name) {
+        Long id = snapshot.get().idsByName().get(name);
+        return id == null ? Optional.empty() : Optional.of(Category.builder().id(id).name(name).build());
+    }
+
+    public Optional<String> findName(Long id) {
+        return Optional.ofNullable(snapshot.get().namesById().get(id));
+    }
+
+    /**
+     * Добавляет категорию в справочник этого и остальных узлов после фиксации текущей транзакции.
+     */
+    public void registerAfterCommit(String name, Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            registerAndPublish(name, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                registerAndPublish(name, id);
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            RegisteredCategory category = objectMapper.readValue(message.getBody(), RegisteredCategory.class);
+            register(category.name(), category.id());
+        } catch (IOException e) {
+            log.warn("Unreadable category registry message skipped", e);
+        }
+    }
+
+    private void registerAndPublish(String name, Long id) {
+        register(name, id);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(new RegisteredCategory(name, id)));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Failed to publish category {}, other nodes will resolve it from the database", name, e);
+        }
+    }
+
+    private void register(String name, Long id) {
+        snapshot.updateAndGet(current -> current.with(name, id));
+    }
+
+    private record RegisteredCategory(String name, Long id) {
+    }
+
+    private record Snapshot(Map<String, Long> idsByName, Map<Long, String> namesById) {
+
+        Snapshot with(String name, Long id) {
+            if (id.equals(idsByName.get(name))) {
+                return this;
+            }
+            Map<String, Long> ids = new HashMap<>(idsByName);
+            Map<Long, String> names = new HashMap<>(namesById);
+            ids.put(name, id);
+            names.put(id, name);
+            return new Snapshot(Map.copyOf(ids), Map.copyOf(names));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.polyakov.bookstore.service;
+
+import ru.polyakov.bookstore.dto.response.CategoryStatsResponse;
+
+public interface CategoryService {
+
+    /**
+     * Число книг по категориям из счётчиков, без подсчёта по таблице книг.
+     */
+    CategoryStatsResponse getStats();
+}
@@ -0,0 +1,33 @@
+package ru.polyakov.bookstore.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.polyakov.bookstore.dto.response.CategoryBooksResponse;
+import ru.polyakov.bookstore.dto.response.CategoryStatsResponse;
+import ru.polyakov.bookstore.repository.CategoryRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class CategoryServiceImpl implements CategoryService {
+
+    private final CategoryRepository categoryRepository;
+
+    /**
+     * Снимок не сбрасывается при записи книг и живёт до ttl кэша {@code categoryStats}.
+     */
+    @Cacheable(cacheNames = "categoryStats", key = "'all'", sync = true)
+    @Transactional(readOnly = true)
+    @Override
+    public CategoryStatsResponse getStats() {
+        List<CategoryBooksResponse> categories = categoryRepository.findBookCounts().stream()
+                .map(count -> new CategoryBooksResponse(count.getName(), count.getBooks()))
+                .toList();
+        long totalBooks = categories.stream().mapToLong(CategoryBooksResponse::getBooks).sum();
+        return new CategoryStatsResponse(categories, totalBooks, Instant.now());
+    }
+}
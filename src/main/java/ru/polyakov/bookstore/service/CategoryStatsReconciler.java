@@ -0,0 +1,137 @@
+package ru.polyakov.bookstore.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.polyakov.bookstore.controller.config.CategoryStats;
+import ru.polyakov.bookstore.repository.CategoryRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Сворачивает изменения числа книг из {@code category_book_count_delta} в счётчики категорий
+ * и периодически сверяет счётчики с таблицей книг.
+ * <p>
+ * Запись книги только вставляет изменение, строки категорий блокируются здесь, в фоне. Категории
+ * обходятся порциями по возрастанию id, каждая порция в своей транзакции. Свёртку выполняет
+ * любой узел: блокировка строк не даёт двум узлам учесть одно изменение дважды. Сверку
+ * за интервал выполняет один узел.
+ */
+@Slf4j
+@Component
+public class CategoryStatsReconciler implements ApplicationRunner {
+
+    static final String LOCK_KEY = "category-stats:reconcile";
+
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final TaskScheduler taskScheduler;
+    private final CategoryStats settings;
+    private final Counter repaired;
+    private final Counter folded;
+
+    public CategoryStatsReconciler(CategoryRepository categoryRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   StringRedisTemplate redisTemplate, TaskScheduler taskScheduler,
+                                   CategoryStats settings, MeterRegistry meterRegistry) {
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redisTemplate = redisTemplate;
+        this.taskScheduler = taskScheduler;
+        this.settings = settings;
+        this.repaired = Counter.builder("category.stats.repaired")
+                .description("Категории, счётчик книг которых разошёлся с таблицей книг и был исправлен")
+                .register(meterRegistry);
+        this.folded = Counter.builder("category.stats.folded")
+                .description("Категории, несвёрнутые изменения числа книг которых перенесены в счётчик")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        taskScheduler.scheduleWithFixedDelay(this::foldSafely,
+                Instant.now().plus(settings.getFoldInterval()), settings.getFoldInterval());
+        if (settings.isReconcileEnabled()) {
+            taskScheduler.scheduleWithFixedDelay(this::reconcileIfFirst,
+                    Instant.now().plus(settings.getReconcileInterval()), settings.getReconcileInterval());
+        }
+    }
+
+    /**
+     * Сверяет счётчики всех категорий и возвращает число исправленных.
+     */
+    public int reconcile() {
+        int repairedCategories = 0;
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = categoryRepository.findIdsAfter(afterId, settings.getReconcileBatchSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> batch = ids;
+            Integer repairedInBatch = transactionTemplate.execute(status -> {
+                categoryRepository.lockByIds(batch);
+                return (int) categoryRepository.reconcileBookCounts(batch).stream()
+                        .filter(Boolean.TRUE::equals)
+                        .count();
+            });
+            repairedCategories += repairedInBatch != null ? repairedInBatch : 0;
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == settings.getReconcileBatchSize());
+        if (repairedCategories > 0) {
+            repaired.increment(repairedCategories);
+            log.warn("Repaired book counts of {} categories", repairedCategories);
+        }
+        return repairedCategories;
+    }
+
+    /**
+     * Переносит несвёрнутые изменения в счётчики и возвращает число изменённых категорий.
+     */
+    public int fold() {
+        int foldedCategories = 0;
+        Integer foldedInBatch;
+        do {
+            foldedInBatch = transactionTemplate.execute(status -> {
+                List<Long> ids = categoryRepository.lockWithBookCountDeltas(settings.getReconcileBatchSize());
+                return ids.isEmpty() ? 0 : categoryRepository.foldBookCountDeltas(ids);
+            });
+            foldedCategories += foldedInBatch != null ? foldedInBatch : 0;
+        } while (foldedInBatch != null && foldedInBatch == settings.getReconcileBatchSize());
+        folded.increment(foldedCategories);
+        return foldedCategories;
+    }
+
+    private void foldSafely() {
+        try {
+            fold();
+        } catch (RuntimeException e) {
+            log.warn("Folding category book count deltas failed, will retry in {}", settings.getFoldInterval(), e);
+        }
+    }
+
+    /**
+     * Сверяет счётчики, если за этот интервал их не сверял другой узел.
+     */
+    private void reconcileIfFirst() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, "1", settings.getReconcileInterval()))) {
+                reconcile();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Category book count reconciliation failed, will retry in {}",
+                    settings.getReconcileInterval(), e);
+        }
+    }
+}
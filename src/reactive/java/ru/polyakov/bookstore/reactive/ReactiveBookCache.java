@@ -0,0 +1,116 @@
+package ru.polyakov.bookstore.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheKeys;
+import ru.polyakov.bookstore.cache.CacheValueSerializer;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Неблокирующее чтение и заполнение кэшей основного приложения: те же ключи, формат значений,
+ * отрицательные записи и ttl. Локального уровня нет, поэтому удаления ключей основным приложением
+ * видны сразу и подписка на каналы инвалидации не нужна.
+ * <p>
+ * Одновременные промахи по одному ключу на узле объединяются в одну загрузку.
+ */
+@Slf4j
+@Profile(ReactiveBookStoreApplication.PROFILE)
+@Component
+public class ReactiveBookCache {
+
+    /**
+     * Так {@code RedisCache} хранит отрицательные записи.
+     */
+    private static final byte[] NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final ReactiveStringRedisTemplate stringRedisTemplate;
+    private final CacheValueSerializer valueSerializer;
+    private final CacheNames appCacheProperties;
+    private final Map<String, Mono<Optional<Object>>> inFlight = new ConcurrentHashMap<>();
+
+    public ReactiveBookCache(ReactiveRedisConnectionFactory factory, ReactiveStringRedisTemplate stringRedisTemplate,
+                             CacheNames appCacheProperties) {
+        this.redisTemplate = new ReactiveRedisTemplate<>(factory, RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.string())
+                .value(RedisSerializer.byteArray())
+                .build());
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.valueSerializer = new CacheValueSerializer(appCacheProperties.getCompressionThreshold());
+        this.appCacheProperties = appCacheProperties;
+    }
+
+    /**
+     * Значение из кэша или из {@code loader} с записью в кэш. Пустой результат загрузки
+     * кэшируется как отрицательная запись, и её чтение тоже даёт пустой результат.
+     */
+    public <T> Mono<T> get(String cacheName, String key, Class<T> type, Supplier<Mono<T>> loader) {
+        String redisKey = cacheName + "::" + key;
+        return inFlight.computeIfAbsent(redisKey, k -> redisTemplate.opsForValue().get(k)
+                        .onErrorResume(e -> {
+                            log.warn("Cannot read cache key {}, loading from the database", k, e);
+                            return Mono.empty();
+                        })
+                        .flatMap(bytes -> read(bytes, type))
+                        .switchIfEmpty(Mono.defer(() -> load(cacheName, k, loader)))
+                        .doFinally(signal -> inFlight.remove(k))
+                        .cache())
+                .flatMap(value -> Mono.justOrEmpty(value.map(type::cast)));
+    }
+
+    /**
+     * Ключ страницы категории с текущими поколениями каталога и категории, как в {@link CacheGenerations}.
+     */
+    public Mono<String> categoryPageKey(String categoryName, long cursor, int size) {
+        return stringRedisTemplate.opsForValue().multiGet(CacheGenerations.generationRedisKeys(categoryName))
+                .map(generations -> CacheKeys.categoryPage(categoryName,
+                        CacheGenerations.parse(generations.get(0)), CacheGenerations.parse(generations.get(1)),
+                        cursor, size));
+    }
+
+    private Mono<Optional<Object>> read(byte[] bytes, Class<?> type) {
+        if (Arrays.equals(bytes, NULL_VALUE)) {
+            return Mono.just(Optional.empty());
+        }
+        Object value = valueSerializer.deserialize(bytes);
+        return type.isInstance(value) ? Mono.just(Optional.of(value)) : Mono.empty();
+    }
+
+    private <T> Mono<Optional<Object>> load(String cacheName, String redisKey, Supplier<Mono<T>> loader) {
+        return loader.get()
+                .map(Optional::<Object>of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(value -> write(cacheName, redisKey, value).thenReturn(value));
+    }
+
+    private Mono<Boolean> write(String cacheName, String redisKey, Optional<Object> value) {
+        byte[] bytes = value.map(valueSerializer::serialize).orElse(NULL_VALUE);
+        Duration ttl = value.isPresent()
+                ? appCacheProperties.getTtl().getOrDefault(cacheName, Duration.ZERO)
+                : appCacheProperties.getNegativeTtl();
+        Mono<Boolean> set = ttl.isZero()
+                ? redisTemplate.opsForValue().set(redisKey, bytes)
+                : redisTemplate.opsForValue().set(redisKey, bytes, ttl);
+        return set.onErrorResume(e -> {
+            log.warn("Cannot write cache key {}", redisKey, e);
+            return Mono.just(false);
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package ru.polyakov.bookstore.reactive;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.exception.NotFoundException;
+
+import static java.lang.String.format;
+
+/**
+ * Эндпоинты чтения с теми же путями и ответами, что и в {@link ru.polyakov.bookstore.controller.BookController}.
+ */
+@Profile(ReactiveBookStoreApplication.PROFILE)
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/v1")
+public class ReactiveBookController {
+
+    private final ReactiveBookService bookService;
+
+    @GetMapping("/book/{id}")
+    public Mono<BookResponse> findById(@PathVariable Long id) {
+        return bookService.findById(id).switchIfEmpty(Mono.error(
+                () -> new NotFoundException(format("Книга с id %s не найдена", id))));
+    }
+
+    @GetMapping("/book")
+    public Mono<BookResponse> findByAuthorAndName(@RequestParam String name, @RequestParam String author) {
+        return bookService.findByAuthorAndName(name, author).switchIfEmpty(Mono.error(
+                () -> new NotFoundException(format("Книга под названием %s автора %s не найдена", name, author))));
+    }
+
+    @GetMapping("{category}/book")
+    public Mono<BooksResponse> findByCategory(@PathVariable String category,
+                                              @RequestParam(defaultValue = "0") Long cursor,
+                                              @RequestParam(defaultValue = "20") Integer size) {
+        return bookService.findByCategory(category, cursor, size);
+    }
+
+    @Operation(
+            summary = "Потоковая выгрузка книг категории",
+            description = "Все книги категории после cursor в формате NDJSON. "
+                    + "Книги читаются из БД по мере того, как клиент успевает их принимать",
+            responses = @ApiResponse(responseCode = "200", description = "OK")
+    )
+    @GetMapping(value = "{category}/book:stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookShortResponse> streamByCategory(@PathVariable String category,
+                                                    @RequestParam(defaultValue = "0") Long cursor) {
+        return bookService.streamByCategory(category, cursor);
+    }
+}
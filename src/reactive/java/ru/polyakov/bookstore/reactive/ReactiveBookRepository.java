@@ -0,0 +1,87 @@
+package ru.polyakov.bookstore.reactive;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.polyakov.bookstore.model.Book;
+import ru.polyakov.bookstore.model.Category;
+import ru.polyakov.bookstore.repository.BookRepository;
+
+import java.time.Instant;
+
+/**
+ * Запросы чтения книг через R2DBC. Строки собираются в {@link Book}, чтобы маппинг в ответы
+ * оставался общим с основным приложением.
+ */
+@Profile(ReactiveBookStoreApplication.PROFILE)
+@RequiredArgsConstructor
+@Repository
+public class ReactiveBookRepository {
+
+    private static final String SELECT_BOOK = "select b.id, b.name, b.author, b.version, b.updated_at, "
+            + "c.id as category_id, c.name as category_name from book b join category c on c.id = b.category_id ";
+    private static final String SELECT_CATEGORY_PAGE = "select b.id, b.name, b.author "
+            + "from book b join category c on c.id = b.category_id "
+            + "where c.name = :name and b.id > :cursor order by b.id";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Book> findById(long id) {
+        return databaseClient.sql(SELECT_BOOK + "where b.id = :id")
+                .bind("id", id)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    public Mono<Book> findByNameAndAuthor(String name, String author) {
+        return databaseClient.sql(SELECT_BOOK + "where b.name = :name and b.author = :author")
+                .bind("name", name)
+                .bind("author", author)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    public Flux<Book> findPageByCategoryName(String name, long cursor, int limit) {
+        return databaseClient.sql(SELECT_CATEGORY_PAGE + " limit :limit")
+                .bind("name", name)
+                .bind("cursor", cursor)
+                .bind("limit", limit)
+                .map(ReactiveBookRepository::toShortBook)
+                .all();
+    }
+
+    /**
+     * Все книги категории после курсора. Строки читаются порциями по мере спроса подписчика.
+     */
+    public Flux<Book> streamByCategoryName(String name, long cursor) {
+        return databaseClient.sql(SELECT_CATEGORY_PAGE)
+                .filter(statement -> statement.fetchSize(BookRepository.STREAM_FETCH_SIZE))
+                .bind("name", name)
+                .bind("cursor", cursor)
+                .map(ReactiveBookRepository::toShortBook)
+                .all();
+    }
+
+    private static Book toBook(Readable row) {
+        Book book = toShortBook(row);
+        book.setVersion(row.get("version", Long.class));
+        book.setUpdatedAt(row.get("updated_at", Instant.class));
+        book.setCategory(Category.builder()
+                .id(row.get("category_id", Long.class))
+                .name(row.get("category_name", String.class))
+                .build());
+        return book;
+    }
+
+    private static Book toShortBook(Readable row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .author(row.get("author", String.class))
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.polyakov.bookstore.reactive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.polyakov.bookstore.cache.CacheKeys;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+import ru.polyakov.bookstore.exception.BadRequestException;
+import ru.polyakov.bookstore.mapper.BookMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+@Profile(ReactiveBookStoreApplication.PROFILE)
+@RequiredArgsConstructor
+@Service
+public class ReactiveBookService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReactiveBookRepository bookRepository;
+    private final ReactiveBookCache bookCache;
+    private final BookMapper mapper;
+
+    public Mono<BookResponse> findById(long id) {
+        return bookCache.get("book", String.valueOf(id), BookResponse.class,
+                () -> bookRepository.findById(id).map(mapper::toResponse));
+    }
+
+    public Mono<BookResponse> findByAuthorAndName(String name, String author) {
+        return bookCache.get("bookByNameAndAuthor", CacheKeys.nameAndAuthor(name, author), BookResponse.class,
+                () -> bookRepository.findByNameAndAuthor(name, author).map(mapper::toResponse));
+    }
+
+    public Mono<BooksResponse> findByCategory(String categoryName, long cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return Mono.error(new BadRequestException(format("Размер страницы должен быть от 1 до %s", MAX_PAGE_SIZE)));
+        }
+        return bookCache.categoryPageKey(categoryName, cursor, size)
+                .flatMap(key -> bookCache.get("books", key, BooksResponse.class,
+                        () -> findPage(categoryName, cursor, size)));
+    }
+
+    /**
+     * Все книги категории после курсора, без кэша и с учётом спроса клиента.
+     */
+    public Flux<BookShortResponse> streamByCategory(String categoryName, long cursor) {
+        return bookRepository.streamByCategoryName(categoryName, cursor).map(mapper::toShortResponse);
+    }
+
+    private Mono<BooksResponse> findPage(String categoryName, long cursor, int size) {
+        return bookRepository.findPageByCategoryName(categoryName, cursor, size + 1)
+                .map(mapper::toShortResponse)
+                .collectList()
+                .map(books -> toPage(books, size));
+    }
+
+    private static BooksResponse toPage(List<BookShortResponse> books, int size) {
+        if (books.size() <= size) {
+            return new BooksResponse(books, null);
+        }
+        List<BookShortResponse> page = new ArrayList<>(books.subList(0, size));
+        return new BooksResponse(page, page.get(size - 1).getId());
+    }
+}
@@ -0,0 +1,48 @@
+package ru.polyakov.bookstore.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import ru.polyakov.bookstore.controller.GlobalExceptionHandler;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+import ru.polyakov.bookstore.mapper.BookMapper;
+
+/**
+ * Отдельное приложение с неблокирующими эндпоинтами чтения на WebFlux, R2DBC и реактивном Redis.
+ * <p>
+ * Использует те же DTO, маппер и формат кэша, что и основное приложение, поэтому узлы обоих видов
+ * читают общие записи Redis. Запись и схема БД остаются за основным приложением.
+ * Собирается с Maven-профилем {@code reactive}.
+ */
+@Profile(ReactiveBookStoreApplication.PROFILE)
+@SpringBootApplication(
+        scanBasePackageClasses = {ReactiveBookStoreApplication.class, BookMapper.class},
+        exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@EnableConfigurationProperties(CacheNames.class)
+@Import(GlobalExceptionHandler.class)
+public class ReactiveBookStoreApplication {
+
+    public static final String PROFILE = "reactive";
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveBookStoreApplication.class)
+                .profiles(PROFILE)
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+
+    /**
+     * Tomcat тоже есть в classpath и выбирается по умолчанию, поэтому сервер задаётся явно.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.polyakov.bookstore.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.InOrder;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.polyakov.bookstore.controller.config.CacheNames;
+import ru.polyakov.bookstore.controller.config.ResponseCache;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidatorTest {
+
+    private final TwoLevelCacheManager cacheManager = mock(TwoLevelCacheManager.class);
+    private final TwoLevelCache cache = mock(TwoLevelCache.class);
+    private final RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+    private final RedisConnection connection = mock(RedisConnection.class, Answers.RETURNS_DEEP_STUBS);
+    private final CountDownLatch redisBack = new CountDownLatch(1);
+
+    private final CacheGenerations generations = mock(CacheGenerations.class);
+
+    private final CacheInvalidator invalidator = new CacheInvalidator(cacheManager, generations,
+            connectionFactory, settings(), new ResponseCache(), Duration.ZERO, new SimpleMeterRegistry());
+
+    @AfterEach
+    void cleanUp() {
+        redisBack.countDown();
+        TransactionSynchronizationManager.clear();
+        invalidator.destroy();
+    }
+
+    @Test
+    public void testCommitDoesNotWaitForUnavailableRedis() throws Exception {
+        when(cacheManager.getCache("book")).thenReturn(cache);
+        when(cache.localKey(1L)).thenReturn("1");
+        when(cache.redisKey("1")).thenReturn(new byte[]{1});
+        when(cacheManager.invalidationMessage(anyString(), anyList())).thenReturn("{}");
+        when(connectionFactory.getConnection())
+                .thenAnswer(invocation -> {
+                    redisBack.await();
+                    throw new RedisConnectionFailureException("Redis command timed out");
+                })
+                .thenReturn(connection);
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidator.evict("book", 1L);
+        long started = System.nanoTime();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) < 0);
+        verify(cache).evictLocal("1");
+
+        redisBack.countDown();
+        verify(connection, timeout(2000)).closePipeline();
+    }
+
+    @Test
+    public void testLocalCacheIsClearedAgainAfterRedisFlush() {
+        when(cacheManager.getCache("book")).thenReturn(cache);
+        when(cache.localKey(1L)).thenReturn("1");
+        when(cache.redisKey("1")).thenReturn(new byte[]{1});
+        when(cacheManager.invalidationMessage(anyString(), anyList())).thenReturn("{}");
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidator.evict("book", 1L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        verify(cache, timeout(2000).times(2)).evictLocal("1");
+        InOrder inOrder = inOrder(cache, connection);
+        inOrder.verify(cache).evictLocal("1");
+        inOrder.verify(connection).closePipeline();
+        inOrder.verify(cache).evictLocal("1");
+        verify(generations, timeout(2000).times(2)).invalidateLocal(any());
+    }
+
+    private static CacheNames settings() {
+        CacheNames cacheProperties = new CacheNames();
+        cacheProperties.getInvalidation().setFlushWait(Duration.ofMillis(50));
+        cacheProperties.getInvalidation().setRetryInterval(Duration.ofMillis(50));
+        return cacheProperties;
+    }
+}
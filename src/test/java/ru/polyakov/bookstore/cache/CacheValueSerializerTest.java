@@ -0,0 +1,96 @@
+package ru.polyakov.bookstore.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.BooksResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheValueSerializerTest {
+
+    private static final BookResponse BOOK = new BookResponse(1L, "Война и мир", "Лев Толстой", "Роман",
+            3L, Instant.parse("2024-05-01T12:00:00.123456Z"));
+
+    private final CacheValueSerializer serializer = new CacheValueSerializer(1024);
+
+    private final RedisSerializer<Object> jdkSerializer = RedisSerializer.java();
+
+    @Test
+    public void testBookRoundTripIsSmallerThanJdk() {
+        byte[] bytes = serializer.serialize(BOOK);
+
+        assertEquals(BOOK, serializer.deserialize(bytes));
+        assertTrue(bytes.length * 4 < jdkSerializer.serialize(BOOK).length);
+    }
+
+    @Test
+    public void testLargePageIsCompressed() {
+        BooksResponse page = new BooksResponse(LongStream.rangeClosed(1, 100)
+                .mapToObj(id -> new BookShortResponse(id, "Книга " + id, "Автор"))
+                .toList(), 101L);
+
+        byte[] bytes = serializer.serialize(page);
+
+        assertEquals(CacheValueSerializer.FLAG_DEFLATE, bytes[3]);
+        assertEquals(page, serializer.deserialize(bytes));
+        assertTrue(bytes.length < new CacheValueSerializer(Integer.MAX_VALUE).serialize(page).length);
+    }
+
+    @Test
+    public void testNullFieldsRoundTrip() {
+        BooksResponse page = new BooksResponse(List.of(new BookShortResponse(-1L, null, "")), null);
+
+        assertEquals(page, serializer.deserialize(serializer.serialize(page)));
+    }
+
+    @Test
+    public void testEncodedResponseRoundTrip() {
+        byte[] json = "[\"книга\"]".repeat(200).getBytes(StandardCharsets.UTF_8);
+        EncodedResponse identity = new EncodedResponse("\"3\"", 1714564800000L, null, json);
+        EncodedResponse gzipped = new EncodedResponse("\"3-gzip\"", 1714564800000L, EncodedResponse.GZIP, json);
+
+        EncodedResponse read = (EncodedResponse) serializer.deserialize(serializer.serialize(identity));
+        byte[] gzippedBytes = serializer.serialize(gzipped);
+
+        assertEquals(CacheValueSerializer.FLAG_DEFLATE, serializer.serialize(identity)[3]);
+        assertEquals(0, gzippedBytes[3]);
+        assertEquals(identity.eTag(), read.eTag());
+        assertEquals(identity.lastModified(), read.lastModified());
+        assertNull(read.contentEncoding());
+        assertArrayEquals(json, read.body());
+        assertArrayEquals(json, ((EncodedResponse) serializer.deserialize(gzippedBytes)).body());
+    }
+
+    @Test
+    public void testLegacyJdkValueIsReadable() {
+        assertEquals(BOOK, serializer.deserialize(jdkSerializer.serialize(BOOK)));
+    }
+
+    @Test
+    public void testLegacyValueOfUnsupportedTypeIsMiss() {
+        assertNull(serializer.deserialize(jdkSerializer.serialize("legacy")));
+    }
+
+    @Test
+    public void testUnknownVersionIsMiss() {
+        byte[] bytes = serializer.serialize(BOOK);
+        bytes[1] = CacheValueSerializer.VERSION + 1;
+
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testOtherTypesFallBackToJdk() {
+        assertEquals(42L, serializer.deserialize(serializer.serialize(42L)));
+    }
+}
@@ -0,0 +1,163 @@
+package ru.polyakov.bookstore.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadReplicaRoutingDataSourceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-05-01T12:00:00Z"), ZoneOffset.UTC);
+
+    private final DataSource primary = mock(DataSource.class, Answers.RETURNS_DEEP_STUBS);
+    private final DataSource first = mock(DataSource.class, Answers.RETURNS_DEEP_STUBS);
+    private final DataSource second = mock(DataSource.class, Answers.RETURNS_DEEP_STUBS);
+
+    private final ReadReplicaRoutingDataSource dataSource = new ReadReplicaRoutingDataSource(primary,
+            replicas(), new ReadYourWrites(Duration.ofSeconds(5), CLOCK), Duration.ofSeconds(5),
+            Duration.ofHours(1), new SimpleMeterRegistry());
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        TransactionSynchronizationManager.clear();
+        RequestContextHolder.resetRequestAttributes();
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsAreSpreadOverReplicas() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(first.getConnection(), dataSource.getConnection());
+        assertSame(second.getConnection(), dataSource.getConnection());
+        assertSame(first.getConnection(), dataSource.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertSame(primary.getConnection(), dataSource.getConnection());
+    }
+
+    @Test
+    public void testFailedReplicaIsSkippedUntilCheckSucceeds() throws SQLException {
+        Connection connection = first.getConnection();
+        when(first.getConnection()).thenThrow(new SQLException("connection refused"));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(second.getConnection(), dataSource.getConnection());
+        assertSame(second.getConnection(), dataSource.getConnection());
+
+        when(second.getConnection()).thenThrow(new SQLException("connection refused"));
+        assertSame(primary.getConnection(), dataSource.getConnection());
+
+        doReturn(connection).when(first).getConnection();
+        dataSource.checkReplicas();
+        assertSame(connection, dataSource.getConnection());
+        assertSame(connection, dataSource.getConnection());
+    }
+
+    @Test
+    public void testLaggingReplicaIsExcluded() throws SQLException {
+        ResultSet lag = mock(ResultSet.class);
+        when(first.getConnection().createStatement().executeQuery(anyString())).thenReturn(lag);
+        when(lag.next()).thenReturn(true);
+        when(lag.getDouble(2)).thenReturn(60.0);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        dataSource.checkReplicas();
+
+        assertSame(second.getConnection(), dataSource.getConnection());
+        assertSame(second.getConnection(), dataSource.getConnection());
+    }
+
+    @Test
+    public void testReplicaThatStoppedReceivingWalIsExcluded() throws SQLException {
+        ResultSet lag = mock(ResultSet.class);
+        when(first.getConnection().createStatement().executeQuery(anyString())).thenReturn(lag);
+        when(lag.next()).thenReturn(true);
+        when(lag.getBoolean(1)).thenReturn(true);
+        when(lag.getDouble(2)).thenReturn(0.0);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        dataSource.checkReplicas();
+
+        assertSame(second.getConnection(), dataSource.getConnection());
+        assertSame(second.getConnection(), dataSource.getConnection());
+
+        when(lag.getBoolean(1)).thenReturn(false);
+        dataSource.checkReplicas();
+        assertSame(first.getConnection(), dataSource.getConnection());
+    }
+
+    @Test
+    public void testConnectionWithCredentialsComesFromPrimary() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(primary.getConnection("reader", "secret"), dataSource.getConnection("reader", "secret"));
+    }
+
+    @Test
+    public void testClientReadsFromPrimaryAfterOwnWrite() throws SQLException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertSame(primary.getConnection(), dataSource.getConnection());
+        assertSame(primary.getConnection(), dataSource.getConnection());
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        });
+
+        Cookie cookie = response.getCookie(ReadYourWrites.COOKIE);
+        assertNotNull(cookie);
+        assertEquals(1, response.getCookies().length);
+        assertEquals(String.valueOf(CLOCK.millis() + 5000), cookie.getValue());
+
+        TransactionSynchronizationManager.clear();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primary.getConnection(), readWithCookie(cookie.getValue()));
+        assertSame(first.getConnection(), readWithCookie(String.valueOf(CLOCK.millis() - 1)));
+        assertSame(second.getConnection(), readWithCookie(String.valueOf(CLOCK.millis() + 60_000)));
+    }
+
+    private Connection readWithCookie(String value) throws SQLException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWrites.COOKIE, value));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        return dataSource.getConnection();
+    }
+
+    private Map<String, DataSource> replicas() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("first", first);
+        replicas.put("second", second);
+        return replicas;
+    }
+}
@@ -1,40 +1,66 @@
 package ru.polyakov.bookstore.integration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import ru.polyakov.bookstore.AbstractIntegrationTest;
+import ru.polyakov.bookstore.cache.CacheGenerations;
+import ru.polyakov.bookstore.cache.CacheKeys;
 import ru.polyakov.bookstore.model.Book;
 import ru.polyakov.bookstore.repository.BookRepository;
+import ru.polyakov.bookstore.search.BookSearchIndex;
 import ru.polyakov.bookstore.service.BookService;
+import ru.polyakov.bookstore.service.CacheWarmer;
+import ru.polyakov.bookstore.service.CategoryRegistry;
+import ru.polyakov.bookstore.service.CategoryStatsReconciler;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
-import static java.lang.String.format;
 import static net.javacrumbs.jsonunit.JsonAssert.assertJsonEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.polyakov.bookstore.utils.TestUtils.readStringFromResource;
 
 @Sql("classpath:sql/init.sql")
+@AutoConfigureObservability(tracing = false)
 class BookIntegrationTest extends AbstractIntegrationTest {
 
     @SpyBean
@@ -43,13 +69,46 @@ class BookIntegrationTest extends AbstractIntegrationTest {
     @Autowired
     BookRepository bookRepository;
 
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    CategoryRegistry categoryRegistry;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    CacheWarmer cacheWarmer;
+
+    @Autowired
+    CacheGenerations cacheGenerations;
+
+    @Autowired
+    BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    CategoryStatsReconciler categoryStatsReconciler;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     private final String BOOK_ENDPOINT = "/api/v1/book";
     private final String BOOKS_BY_CATEGORY_ENDPOINT = "/api/v1/{categoryName}/book";
     private final String BOOK_BY_ID_ENDPOINT = "/api/v1/book/{id}";
+    private final String EXPORT_ENDPOINT = "/api/v1/book/export";
+    private final String BOOKS_BATCH_ENDPOINT = "/api/v1/books:batch";
+    private final String BOOKS_LOOKUP_ENDPOINT = "/api/v1/books:lookup";
+    private final String SEARCH_ENDPOINT = "/api/v1/book/search";
+    private final String SUGGEST_ENDPOINT = "/api/v1/book/suggest";
+    private final String CATEGORY_STATS_ENDPOINT = "/api/v1/category/stats";
 
     @BeforeEach
     void cleanCache() {
         redisTemplate.delete(redisTemplate.keys("*"));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        categoryRegistry.reload();
+        bookSearchIndex.rebuild();
     }
 
     @Test
@@ -70,6 +129,18 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         verify(bookService, times(1)).findById(2L);
     }
 
+    @Test
+    void findById_shouldServeFromLocalCache() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "2"), OK);
+        redisTemplate.delete("book::2");
+
+        assertJsonEquals(
+                readStringFromResource("/json/response/some_book_about_music_2.json"),
+                expectedFrom(get(BOOK_BY_ID_ENDPOINT, "2"), OK)
+        );
+        verify(bookService, times(1)).findById(2L);
+    }
+
     @Test
     void findById_shouldReturn404() throws Exception {
         expectedMessageAndStatusFrom(
@@ -78,6 +149,77 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         );
     }
 
+    @Test
+    void findById_shouldCacheNotFound() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "100"), NOT_FOUND);
+        assertTrue(redisTemplate.hasKey("book::100"));
+
+        expectedMessageAndStatusFrom(
+                get(BOOK_BY_ID_ENDPOINT, "100"),
+                NOT_FOUND, "Книга с id 100 не найдена"
+        );
+        verify(bookService, times(1)).findById(100L);
+        assertTrue(meterRegistry.get("cache.lookups").tags("cache", "book", "result", "negative_hit")
+                .counter().count() > 0);
+    }
+
+    @Test
+    void findById_shouldExposeLatencyMetrics() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1"), OK);
+
+        assertTrue(meterRegistry.get("cache.load").tags("cache", "book", "result", "success")
+                .timer().count() > 0);
+        assertTrue(meterRegistry.get("spring.data.repository.invocations")
+                .tag("repository", "BookRepository").timer().count() > 0);
+
+        String scrape = expectedFrom(get("/actuator/prometheus"), OK);
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket"));
+        assertTrue(scrape.contains("cache_load_seconds_bucket"));
+    }
+
+    @Test
+    void findById_shouldReturn304ForCurrentETag() throws Exception {
+        mockMvc.perform(get(BOOK_BY_ID_ENDPOINT, "1"))
+                .andExpectAll(status().isOk(), header().string(HttpHeaders.ETAG, "\"0\""),
+                        header().exists(HttpHeaders.LAST_MODIFIED));
+
+        assertEquals("", expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1").header(HttpHeaders.IF_NONE_MATCH, "\"0\""),
+                NOT_MODIFIED));
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1").header(HttpHeaders.IF_NONE_MATCH, "\"1\""), OK);
+    }
+
+    @Test
+    void findAllById_shouldKeepRequestOrderAndReportMissing() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1"), OK);
+
+        mockMvc.perform(get(BOOK_ENDPOINT).params(createParams("ids", "3,100,1")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.books.length()").value(2),
+                        jsonPath("$.books[0].id").value(3),
+                        jsonPath("$.books[1].id").value(1),
+                        jsonPath("$.missing[0]").value(100));
+
+        assertTrue(redisTemplate.hasKey("book::3"));
+        assertTrue(redisTemplate.hasKey("book::100"));
+        verify(bookService, times(1)).findById(1L);
+    }
+
+    @Test
+    void findAllByNameAndAuthor_shouldKeepRequestOrderAndReportMissing() throws Exception {
+        mockMvc.perform(post(BOOKS_LOOKUP_ENDPOINT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/find_books_by_name_and_author.json")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.books.length()").value(2),
+                        jsonPath("$.books[0].id").value(3),
+                        jsonPath("$.books[1].id").value(2),
+                        jsonPath("$.missing[0].name").value("unknown book"));
+
+        assertTrue(redisTemplate.hasKey(nameAndAuthorKey("some book about sport 1", "some sportsman 1")));
+    }
+
     @Test
     void findByAuthorAndName_shouldReturn200() throws Exception {
         String author = "some musician 1", name = "some book about music 1";
@@ -93,12 +235,21 @@ class BookIntegrationTest extends AbstractIntegrationTest {
 
         expectedFrom(get(BOOK_ENDPOINT).params(createParams("name", name, "author", author)), OK);
         verify(bookService, times(1)).findByAuthorAndName(name, author);
-        assertTrue(redisTemplate.hasKey(format("bookByNameAndAuthor::%s%s", name, author)));
+        assertTrue(redisTemplate.hasKey(nameAndAuthorKey(name, author)));
 
         mockMvc.perform(get(BOOK_ENDPOINT).params(createParams("name", name, "author", author)));
         verify(bookService, times(1)).findByAuthorAndName(name, author);
     }
 
+    @Test
+    void findByAuthorAndName_shouldNotMixUpNameAndAuthor() throws Exception {
+        expectedFrom(get(BOOK_ENDPOINT)
+                .params(createParams("name", "some book about music 1", "author", "some musician 1")), OK);
+
+        expectedFrom(get(BOOK_ENDPOINT)
+                .params(createParams("name", "some book about music 1some", "author", " musician 1")), NOT_FOUND);
+    }
+
     @Test
     void findByAuthorAndName_shouldReturn404() throws Exception {
         expectedMessageAndStatusFrom(
@@ -118,11 +269,204 @@ class BookIntegrationTest extends AbstractIntegrationTest {
     @Test
     void findByCategory_shouldCacheValues() throws Exception {
         expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK);
-        verify(bookService, times(1)).findByCategory("sport");
-        assertTrue(redisTemplate.hasKey("books::sport"));
+        verify(bookService, times(1)).findByCategory("sport", 0L, 20);
+        assertTrue(redisTemplate.hasKey(categoryPageKey("sport")));
 
         mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"));
-        verify(bookService, times(1)).findByCategory("sport");
+        verify(bookService, times(1)).findByCategory("sport", 0L, 20);
+    }
+
+    @Test
+    void findByCategory_shouldLoadConcurrentMissesOnce() throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(300);
+            return invocation.callRealMethod();
+        }).when(bookService).findByCategory("sport", 0L, 20);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> responses = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK)))
+                    .toList();
+            for (Future<String> response : responses) {
+                response.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(bookService, times(1)).findByCategory("sport", 0L, 20);
+        assertTrue(meterRegistry.get("cache.loads.coalesced").tag("cache", "books").counter().count() > 0);
+    }
+
+    @Test
+    void findByCategory_shouldReturnPagesByCursor() throws Exception {
+        mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "music").params(createParams("size", "1")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.books.length()").value(1),
+                        jsonPath("$.books[0].id").value(1),
+                        jsonPath("$.nextCursor").value(1));
+
+        mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "music").params(createParams("size", "1", "cursor", "1")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.books.length()").value(1),
+                        jsonPath("$.books[0].id").value(2),
+                        jsonPath("$.nextCursor").isEmpty());
+    }
+
+    @Test
+    void findByCategory_shouldAnswer304WithoutLoadingPage() throws Exception {
+        String etag = mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpectAll(status().isNotModified(), header().string(HttpHeaders.ETAG, etag));
+        verify(bookService, times(1)).findByCategory("sport", 0L, 20);
+    }
+
+    @Test
+    void findByCategory_shouldChangeETagAfterWriteToCategory() throws Exception {
+        String etag = mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport").header(HttpHeaders.IF_NONE_MATCH, etag), NOT_MODIFIED);
+
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, 3).contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/update_sport_book.json")), OK);
+
+        String changed = mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertFalse(etag.equals(changed));
+    }
+
+    @Test
+    void findByCategoryWithTooLargePage_shouldReturn400() throws Exception {
+        expectedMessageAndStatusFrom(
+                get(BOOKS_BY_CATEGORY_ENDPOINT, "music").params(createParams("size", "1000")),
+                BAD_REQUEST, "Размер страницы должен быть от 1 до 100"
+        );
+    }
+
+    @Test
+    void search_shouldMatchAllWordsInNameOrAuthor() throws Exception {
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "SPORT")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.total").value(2),
+                        jsonPath("$.books[0].id").value(3),
+                        jsonPath("$.books[1].id").value(4));
+
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "musician 2 music")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.total").value(1),
+                        jsonPath("$.books[0].name").value("some book about music 2"));
+    }
+
+    @Test
+    void search_shouldRebuildIndexThatMissedChange() throws Exception {
+        jdbcTemplate.update("update book set name = 'chess openings', updated_at = now() + interval '1 minute' "
+                + "where id = 3");
+
+        bookSearchIndex.checkRevision();
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "chess")))
+                .andExpect(jsonPath("$.total").value(0));
+
+        bookSearchIndex.checkRevision();
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "chess")))
+                .andExpectAll(
+                        jsonPath("$.total").value(1),
+                        jsonPath("$.books[0].id").value(3));
+    }
+
+    @Test
+    void search_shouldFollowWrites() throws Exception {
+        expectedFrom(post(BOOK_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/new_computer_book.json")), CREATED);
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "computer")))
+                .andExpect(jsonPath("$.books[0].author").value("programmer"));
+
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, "3")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/update_sport_book.json")), OK);
+        expectedFrom(delete(BOOK_BY_ID_ENDPOINT, "4"), NO_CONTENT);
+
+        mockMvc.perform(get(SEARCH_ENDPOINT).params(createParams("q", "sport")))
+                .andExpectAll(
+                        jsonPath("$.total").value(1),
+                        jsonPath("$.books[0].name").value("some new book about sport 1"));
+    }
+
+    @Test
+    void search_shouldReturn400ForEmptyQuery() throws Exception {
+        expectedMessageAndStatusFrom(
+                get(SEARCH_ENDPOINT).params(createParams("q", " -- ")),
+                BAD_REQUEST, "Поисковый запрос должен содержать от 1 до 10 слов"
+        );
+    }
+
+    @Test
+    void suggest_shouldReturnNamesAndAuthorsByPrefix() throws Exception {
+        mockMvc.perform(get(SUGGEST_ENDPOINT).params(createParams("prefix", "SOME  MUS")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.suggestions.length()").value(2),
+                        jsonPath("$.suggestions[0].text").value("some musician 1"),
+                        jsonPath("$.suggestions[0].type").value("AUTHOR"),
+                        jsonPath("$.suggestions[1].text").value("some musician 2"));
+
+        expectedFrom(delete(BOOK_BY_ID_ENDPOINT, "1"), NO_CONTENT);
+
+        mockMvc.perform(get(SUGGEST_ENDPOINT).params(createParams("prefix", "some mus")))
+                .andExpect(jsonPath("$.suggestions[*].text").value(List.of("some musician 2")));
+    }
+
+    @Test
+    void suggest_shouldReturn400ForBlankPrefix() throws Exception {
+        expectedMessageAndStatusFrom(
+                get(SUGGEST_ENDPOINT).params(createParams("prefix", "  ")),
+                BAD_REQUEST, "Префикс не должен быть пустым"
+        );
+    }
+
+    @Test
+    void warmUp_shouldLoadMostRequestedCategories() throws Exception {
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK);
+        cacheWarmer.flushAccessCounts();
+        cacheManager.getCache("books").clear();
+
+        cacheWarmer.warmUp();
+
+        assertTrue(redisTemplate.hasKey(categoryPageKey("sport")));
+        assertTrue(redisTemplate.hasKey("warm-up:sentinel"));
+        verify(bookService, times(2)).findByCategory("sport", 0L, 20);
+    }
+
+    @Test
+    void warmUp_shouldNotTrackUnknownCategories() throws Exception {
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "no such category"), OK);
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK);
+        cacheWarmer.flushAccessCounts();
+
+        assertEquals(Set.of("sport"), redisTemplate.opsForZSet().range("warm-up:categories", 0, -1));
+    }
+
+    @Test
+    void exportAll_shouldStreamAllBooksAsNdjson() throws Exception {
+        MvcResult result = mockMvc.perform(get(EXPORT_ENDPOINT))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertJsonEquals(readStringFromResource("/json/response/some_book_about_music_1.json"), lines[0]);
     }
 
     @Test
@@ -139,16 +483,50 @@ class BookIntegrationTest extends AbstractIntegrationTest {
     @Test
     void save_shouldCleanBooksCache() throws Exception {
         expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "music"), OK);
-        verify(bookService, times(1)).findByCategory("music");
-        assertTrue(redisTemplate.hasKey("books::music"));
+        verify(bookService, times(1)).findByCategory("music", 0L, 20);
+        assertTrue(redisTemplate.hasKey(categoryPageKey("music")));
 
         expectedFrom(post(BOOK_ENDPOINT)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(readStringFromResource("/json/request/new_music_book.json")), CREATED);
 
-        assertFalse(redisTemplate.hasKey("books::music"));
+        assertFalse(redisTemplate.hasKey(categoryPageKey("music")));
         mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "music"));
-        verify(bookService, times(2)).findByCategory("music");
+        verify(bookService, times(2)).findByCategory("music", 0L, 20);
+    }
+
+    @Test
+    void save_shouldEvictNotFoundByNameAndAuthor() throws Exception {
+        MockHttpServletRequestBuilder findSaved = get(BOOK_ENDPOINT)
+                .params(createParams("name", "some book about computer", "author", "programmer"));
+        expectedFrom(findSaved, NOT_FOUND);
+
+        expectedFrom(post(BOOK_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/new_computer_book.json")), CREATED);
+
+        expectedFrom(findSaved, OK);
+        verify(bookService, times(2)).findByAuthorAndName("some book about computer", "programmer");
+    }
+
+    @Test
+    void saveExistingBook_shouldReturn400() throws Exception {
+        expectedMessageAndStatusFrom(post(BOOK_ENDPOINT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/invalid/existing_music_book.json")),
+                BAD_REQUEST, "Книга под названием some book about music 1 автора some musician 1 уже есть");
+        assertEquals(4, bookRepository.count());
+    }
+
+    @Test
+    void save_shouldRegisterNewCategory() throws Exception {
+        assertTrue(categoryRegistry.find("computer science").isEmpty());
+
+        expectedFrom(post(BOOK_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/new_computer_book.json")), CREATED);
+
+        assertTrue(categoryRegistry.find("computer science").isPresent());
     }
 
     @Test
@@ -178,6 +556,33 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         verify(bookService, times(0)).save(any(), any());
     }
 
+    @Test
+    void saveAll_shouldReturn201AndCleanBooksCache() throws Exception {
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "music"), OK);
+        assertTrue(redisTemplate.hasKey(categoryPageKey("music")));
+
+        expectedFieldsAndStatusFrom(post(BOOKS_BATCH_ENDPOINT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/new_books_batch.json")),
+                CREATED,
+                "books[0].name", "some book about music 3",
+                "books[0].categoryName", "music",
+                "books[1].name", "some book about computer",
+                "books[1].categoryName", "computer science");
+
+        assertEquals(6, bookRepository.count());
+        assertFalse(redisTemplate.hasKey(categoryPageKey("music")));
+    }
+
+    @Test
+    void saveAllWithExistingBook_shouldReturn400() throws Exception {
+        expectedMessageAndStatusFrom(post(BOOKS_BATCH_ENDPOINT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/invalid/new_books_batch_with_existing_book.json")),
+                BAD_REQUEST, "Книга под названием some book about music 1 автора some musician 1 уже есть");
+        assertEquals(4, bookRepository.count());
+    }
+
     @Test
     void updateById_shouldReturn200AndUpdateBookInDB() throws Exception {
         assertJsonEquals(
@@ -204,9 +609,9 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         checkCachePresentations(Map.of(
                 "book::4", true,
                 "book::1", true,
-                format("bookByNameAndAuthor::%s%s", name, author), true,
-                "books::sport", true,
-                "books::music", true));
+                nameAndAuthorKey(name, author), true,
+                categoryPageKey("sport"), true,
+                categoryPageKey("music"), true));
 
         expectedFrom(put(BOOK_BY_ID_ENDPOINT, 4).contentType(MediaType.APPLICATION_JSON)
                 .content(readStringFromResource("/json/request/update_sport_book.json")), OK);
@@ -214,9 +619,9 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         checkCachePresentations(Map.of(
                 "book::4", false,
                 "book::1", true,
-                format("bookByNameAndAuthor::%s%s", name, author), false,
-                "books::sport", false,
-                "books::music", true));
+                nameAndAuthorKey(name, author), false,
+                categoryPageKey("sport"), false,
+                categoryPageKey("music"), true));
 
         expectedOkFromRequests(
                 get(BOOK_BY_ID_ENDPOINT, "4"),
@@ -226,8 +631,34 @@ class BookIntegrationTest extends AbstractIntegrationTest {
 
         verify(bookService, times(2)).findById(4L);
         verify(bookService, times(1)).findById(1L);
-        verify(bookService, times(2)).findByCategory("sport");
-        verify(bookService, times(1)).findByCategory("music");
+        verify(bookService, times(2)).findByCategory("sport", 0L, 20);
+        verify(bookService, times(1)).findByCategory("music", 0L, 20);
+    }
+
+    @Test
+    void updateToExistingBook_shouldKeepCaches() throws Exception {
+        expectedOkFromRequests(get(BOOK_BY_ID_ENDPOINT, "4"), get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"));
+        String sportPageKey = categoryPageKey("sport");
+
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, 4).contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/invalid/update_to_existing_book.json")), BAD_REQUEST);
+
+        checkCachePresentations(Map.of("book::4", true, sportPageKey, true));
+        assertEquals(sportPageKey, categoryPageKey("sport"));
+    }
+
+    @Test
+    void updateByIdWithStaleIfMatch_shouldReturn412() throws Exception {
+        mockMvc.perform(put(BOOK_BY_ID_ENDPOINT, 3).header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/update_sport_book.json")))
+                .andExpectAll(status().isOk(), header().string(HttpHeaders.ETAG, "\"1\""));
+
+        expectedMessageAndStatusFrom(put(BOOK_BY_ID_ENDPOINT, 3).header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/update_sport_book.json")),
+                PRECONDITION_FAILED, "Книга с id 3 изменилась после получения указанной в If-Match версии");
+        assertEquals(1L, bookRepository.findById(3L).orElseThrow().getVersion());
     }
 
     @Test
@@ -249,18 +680,18 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         checkCachePresentations(Map.of(
                 "book::4", true,
                 "book::1", true,
-                format("bookByNameAndAuthor::%s%s", name, author), true,
-                "books::sport", true,
-                "books::music", true));
+                nameAndAuthorKey(name, author), true,
+                categoryPageKey("sport"), true,
+                categoryPageKey("music"), true));
 
         expectedFrom(delete(BOOK_BY_ID_ENDPOINT, 4), NO_CONTENT);
 
         checkCachePresentations(Map.of(
                 "book::4", false,
                 "book::1", true,
-                format("bookByNameAndAuthor::%s%s", name, author), false,
-                "books::sport", false,
-                "books::music", true));
+                nameAndAuthorKey(name, author), false,
+                categoryPageKey("sport"), false,
+                categoryPageKey("music"), true));
 
         expectedOkFromRequests(
                 get(BOOK_BY_ID_ENDPOINT, "1"),
@@ -268,8 +699,8 @@ class BookIntegrationTest extends AbstractIntegrationTest {
                 get(BOOKS_BY_CATEGORY_ENDPOINT, "music"));
 
         verify(bookService, times(1)).findById(1L);
-        verify(bookService, times(2)).findByCategory("sport");
-        verify(bookService, times(1)).findByCategory("music");
+        verify(bookService, times(2)).findByCategory("sport", 0L, 20);
+        verify(bookService, times(1)).findByCategory("music", 0L, 20);
     }
 
     @Test
@@ -280,12 +711,66 @@ class BookIntegrationTest extends AbstractIntegrationTest {
         );
     }
 
+    @Test
+    void getStats_shouldFollowSaveMoveAndDelete() throws Exception {
+        expectedFrom(post(BOOK_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/new_computer_book.json")), CREATED);
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, "3")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/move_sport_book_to_music.json")), OK);
+        expectedFrom(delete(BOOK_BY_ID_ENDPOINT, "4"), NO_CONTENT);
+
+        mockMvc.perform(get(CATEGORY_STATS_ENDPOINT))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.totalBooks").value(4),
+                        jsonPath("$.categories[0].name").value("music"),
+                        jsonPath("$.categories[0].books").value(3),
+                        jsonPath("$.categories[1].name").value("computer science"),
+                        jsonPath("$.categories[1].books").value(1),
+                        jsonPath("$.categories[2].name").value("sport"),
+                        jsonPath("$.categories[2].books").value(0));
+    }
+
+    @Test
+    void fold_shouldMoveBookCountDeltasIntoCategories() throws Exception {
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, "3")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/move_sport_book_to_music.json")), OK);
+
+        assertEquals(2, categoryStatsReconciler.fold());
+        assertEquals(0, categoryStatsReconciler.fold());
+        assertEquals(0L, jdbcTemplate.queryForObject("select count(*) from category_book_count_delta", Long.class));
+        assertEquals(3L, jdbcTemplate.queryForObject("select book_count from category where name = 'music'",
+                Long.class));
+        assertEquals(0, categoryStatsReconciler.reconcile());
+    }
+
+    @Test
+    void reconcile_shouldRepairDriftedBookCounts() throws Exception {
+        jdbcTemplate.update("update category set book_count = 100 where name = 'music'");
+
+        assertEquals(1, categoryStatsReconciler.reconcile());
+        assertEquals(0, categoryStatsReconciler.reconcile());
+        mockMvc.perform(get(CATEGORY_STATS_ENDPOINT))
+                .andExpectAll(status().isOk(), jsonPath("$.totalBooks").value(4));
+    }
+
     private void expectedOkFromRequests(MockHttpServletRequestBuilder... requests) throws Exception {
         for(MockHttpServletRequestBuilder request : requests) {
             expectedFrom(request, OK);
         }
     }
 
+    private String categoryPageKey(String categoryName) {
+        return "books::" + cacheGenerations.categoryPageKey(categoryName, 0, 20);
+    }
+
+    private static String nameAndAuthorKey(String name, String author) {
+        return "bookByNameAndAuthor::" + CacheKeys.nameAndAuthor(name, author);
+    }
+
     private void checkCachePresentations(Map<String, Boolean> hasKeys) {
         hasKeys.forEach((key, expected) -> assertEquals(expected, redisTemplate.hasKey(key)));
     }
@@ -0,0 +1,117 @@
+package ru.polyakov.bookstore.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import ru.polyakov.bookstore.AbstractIntegrationTest;
+import ru.polyakov.bookstore.datasource.ReadYourWrites;
+import ru.polyakov.bookstore.dto.response.BookResponse;
+import ru.polyakov.bookstore.service.CategoryRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static ru.polyakov.bookstore.utils.TestUtils.readStringFromResource;
+
+/**
+ * Репликой служит та же база под другим пулом, вторая реплика недоступна. Отставание реплики
+ * имитируется записью старого значения в кэш сразу после фиксации.
+ */
+@Sql("classpath:sql/init.sql")
+@AutoConfigureObservability(tracing = false)
+class ReadReplicasIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    CategoryRegistry categoryRegistry;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final String BOOK_BY_ID_ENDPOINT = "/api/v1/book/{id}";
+
+    @DynamicPropertySource
+    static void registerReplicas(DynamicPropertyRegistry registry) {
+        registry.add("app.read-replicas.enabled", () -> true);
+        registry.add("app.read-replicas.nodes[0].name", () -> "stand-in");
+        registry.add("app.read-replicas.nodes[0].url", postgreSQLContainer::getJdbcUrl);
+        registry.add("app.read-replicas.nodes[1].name", () -> "down");
+        registry.add("app.read-replicas.nodes[1].url", () -> "jdbc:postgresql://localhost:1/postgres");
+        registry.add("app.read-replicas.max-lag", () -> "200ms");
+        registry.add("app.read-replicas.health-check-interval", () -> "300ms");
+    }
+
+    @BeforeEach
+    void cleanCache() {
+        redisTemplate.delete(redisTemplate.keys("*"));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        categoryRegistry.reload();
+    }
+
+    @Test
+    void findById_shouldReadFromHealthyReplica() throws Exception {
+        double before = routed("stand-in");
+
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1"), OK);
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "2"), OK);
+
+        assertEquals(before + 2, routed("stand-in"));
+        assertEquals(0, meterRegistry.get("datasource.replica.healthy").tag("replica", "down").gauge().value());
+        assertNotNull(meterRegistry.get("hikaricp.connections.active").tag("pool", "stand-in").gauge());
+    }
+
+    @Test
+    void updateById_shouldPinClientToPrimary() throws Exception {
+        Cookie cookie = mockMvc.perform(put(BOOK_BY_ID_ENDPOINT, "3")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(readStringFromResource("/json/request/update_sport_book.json")))
+                .andReturn()
+                .getResponse()
+                .getCookie(ReadYourWrites.COOKIE);
+        assertNotNull(cookie);
+        double replicaBefore = routed("stand-in");
+        double primaryBefore = routed("primary");
+
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "4").cookie(cookie), OK);
+
+        assertEquals(replicaBefore, routed("stand-in"));
+        assertEquals(primaryBefore + 1, routed("primary"));
+    }
+
+    @Test
+    void updateById_shouldEvictValueLoadedFromLaggingReplicaAgain() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "3"), OK);
+        BookResponse stale = (BookResponse) cacheManager.getCache("book").get(3L).get();
+
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, "3")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/update_sport_book.json")), OK);
+        // Промах сразу после фиксации прочитал реплику, которая ещё не получила запись
+        cacheManager.getCache("book").put(3L, stale);
+        assertFalse(expectedFrom(get(BOOK_BY_ID_ENDPOINT, "3"), OK).contains("some new book about sport 1"));
+
+        Thread.sleep(1000);
+        assertTrue(expectedFrom(get(BOOK_BY_ID_ENDPOINT, "3"), OK).contains("some new book about sport 1"));
+    }
+
+    private double routed(String route) {
+        return meterRegistry.get("datasource.routed.connections")
+                .tags("route", route, "access", "read-only")
+                .counter()
+                .count();
+    }
+}
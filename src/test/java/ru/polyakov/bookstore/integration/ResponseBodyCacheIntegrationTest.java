@@ -0,0 +1,115 @@
+package ru.polyakov.bookstore.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import ru.polyakov.bookstore.AbstractIntegrationTest;
+import ru.polyakov.bookstore.service.BookService;
+import ru.polyakov.bookstore.service.CategoryRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static net.javacrumbs.jsonunit.JsonAssert.assertJsonEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.polyakov.bookstore.utils.TestUtils.readStringFromResource;
+
+@Sql("classpath:sql/init.sql")
+@TestPropertySource(properties = {"app.response-cache.enabled=true", "app.response-cache.gzip-min-size=0"})
+class ResponseBodyCacheIntegrationTest extends AbstractIntegrationTest {
+
+    @SpyBean
+    BookService bookService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    CategoryRegistry categoryRegistry;
+
+    private final String BOOKS_BY_CATEGORY_ENDPOINT = "/api/v1/{categoryName}/book";
+    private final String BOOK_BY_ID_ENDPOINT = "/api/v1/book/{id}";
+
+    @BeforeEach
+    void cleanCache() {
+        redisTemplate.delete(redisTemplate.keys("*"));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        categoryRegistry.reload();
+    }
+
+    @Test
+    void findById_shouldServeCachedBodyWithoutService() throws Exception {
+        String first = expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1"), OK);
+
+        mockMvc.perform(get(BOOK_BY_ID_ENDPOINT, "1"))
+                .andExpectAll(status().isOk(), header().string(HttpHeaders.ETAG, "\"0\""),
+                        header().exists(HttpHeaders.LAST_MODIFIED),
+                        header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE));
+        assertEquals("", expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1").header(HttpHeaders.IF_NONE_MATCH, "\"0\""),
+                NOT_MODIFIED));
+
+        assertJsonEquals(first, readStringFromResource("/json/response/some_book_about_music_1.json"));
+        assertJsonEquals(first, expectedFrom(get(BOOK_BY_ID_ENDPOINT, "1"), OK));
+        verify(bookService, times(1)).findById(1L);
+        assertTrue(redisTemplate.hasKey("bookBody::1"));
+    }
+
+    @Test
+    void findByCategory_shouldServeGzipRepresentation() throws Exception {
+        String identity = expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "music"), OK);
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = mockMvc.perform(get(BOOKS_BY_CATEGORY_ENDPOINT, "music")
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpectAll(status().isOk(), header().string(HttpHeaders.CONTENT_ENCODING, "gzip"),
+                            header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andReturn()
+                    .getResponse();
+
+            assertTrue(response.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+            assertJsonEquals(identity, gunzip(response.getContentAsByteArray()));
+        }
+        verify(bookService, times(1)).findByCategory(any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void updateById_shouldEvictCachedBodies() throws Exception {
+        expectedFrom(get(BOOK_BY_ID_ENDPOINT, "3"), OK);
+        expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK);
+
+        expectedFrom(put(BOOK_BY_ID_ENDPOINT, "3")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(readStringFromResource("/json/request/update_sport_book.json")), OK);
+
+        mockMvc.perform(get(BOOK_BY_ID_ENDPOINT, "3"))
+                .andExpectAll(status().isOk(), header().string(HttpHeaders.ETAG, "\"1\""));
+        assertTrue(expectedFrom(get(BOOKS_BY_CATEGORY_ENDPOINT, "sport"), OK)
+                .contains("some new book about sport 1"));
+    }
+
+    private static String gunzip(byte[] body) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.polyakov.bookstore.search;
+
+import org.junit.jupiter.api.Test;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.SuggestionResponse;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.polyakov.bookstore.dto.response.SuggestionResponse.Type.AUTHOR;
+import static ru.polyakov.bookstore.dto.response.SuggestionResponse.Type.NAME;
+
+class BookSuggestionsTest {
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    @Test
+    public void testAuthorsWithMoreBooksComeFirst() {
+        index.put(1, "Лёгкое дыхание", "Иван Бунин");
+        index.put(2, "Левша", "Николай Лесков");
+        index.put(3, "Война и мир", "Лев Толстой");
+        index.put(4, "Анна Каренина", "Лев Толстой");
+        BookSuggestions suggestions = BookSuggestions.of(index);
+
+        assertEquals(List.of(
+                new SuggestionResponse("Лев Толстой", AUTHOR, 2),
+                new SuggestionResponse("Левша", NAME, 1),
+                new SuggestionResponse("Лёгкое дыхание", NAME, 1)
+        ), suggestions.suggest(Tokenizer.normalize("ЛЕ"), 10));
+        assertEquals(List.of(), suggestions.suggest("толстой", 10));
+    }
+
+    @Test
+    public void testPrecomputedPrefixesKeepTheBest() {
+        IntStream.rangeClosed(1, 3000).forEach(id -> index.put(id, "Книга " + id, "Автор " + id % 300));
+        BookSuggestions suggestions = BookSuggestions.of(index);
+
+        assertEquals(List.of("Автор 0", "Автор 1", "Автор 2"), texts(suggestions.suggest("а", 3)));
+        assertEquals(List.of("Книга 1", "Книга 2", "Книга 3"), texts(suggestions.suggest("книга ", 3)));
+        assertEquals(List.of("Книга 299", "Книга 2990"), texts(suggestions.suggest("книга 299", 2)));
+    }
+
+    @Test
+    public void testChangesArePatchedAndMerged() {
+        IntStream.rangeClosed(1, 10).forEach(id -> index.put(id, "Книга " + id, "Автор"));
+        BookSuggestions suggestions = BookSuggestions.of(index);
+
+        replace(suggestions, 1, "Новая книга", "Новый автор");
+        suggestions.replace(index.remove(2), null);
+
+        assertEquals(List.of("Новая книга", "Новый автор"), texts(suggestions.suggest("нов", 10)));
+        assertEquals(List.of(new SuggestionResponse("Автор", AUTHOR, 8)), suggestions.suggest("авт", 1));
+        assertEquals(List.of(), suggestions.suggest("книга 2", 10));
+
+        IntStream.rangeClosed(11, 2000).forEach(id -> replace(suggestions, id, "Книга " + id, "Автор"));
+        assertTrue(suggestions.needsMerge());
+        Supplier<SuggestionDictionary> merge = suggestions.startMerge();
+        replace(suggestions, 2001, "Книга 2001", "Автор");
+
+        assertEquals(List.of(new SuggestionResponse("Автор", AUTHOR, 1999)), suggestions.suggest("авт", 1));
+        suggestions.finishMerge(merge.get());
+        assertFalse(suggestions.needsMerge());
+        assertEquals(List.of(new SuggestionResponse("Автор", AUTHOR, 1999)), suggestions.suggest("авт", 1));
+        assertEquals(List.of("Книга 20", "Книга 200", "Книга 201"), texts(suggestions.suggest("книга 20", 3)));
+    }
+
+    private void replace(BookSuggestions suggestions, long id, String name, String author) {
+        suggestions.replace(index.put(id, name, author), new BookShortResponse(id, name, author));
+    }
+
+    private static List<String> texts(List<SuggestionResponse> suggestions) {
+        return suggestions.stream().map(SuggestionResponse::getText).toList();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.polyakov.bookstore.search;
+
+import org.junit.jupiter.api.Test;
+import ru.polyakov.bookstore.dto.response.BookShortResponse;
+import ru.polyakov.bookstore.dto.response.SearchBooksResponse;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    @Test
+    public void testTokensAreCaseFoldedIncludingCyrillic() {
+        assertEquals(List.of("елки", "палки", "и"), Tokenizer.tokens("Ёлки-ПАЛКИ, и ёлки!"));
+        assertEquals(List.of("war", "and", "peace", "1869"), Tokenizer.tokens("War and Peace (1869)"));
+    }
+
+    @Test
+    public void testPostingListRoundTrip() {
+        PostingList postings = new PostingList();
+        int[] docs = {0, 1, 127, 128, 16_384, 2_000_000, Integer.MAX_VALUE - 1};
+        for (int doc : docs) {
+            postings.add(doc);
+        }
+        postings.trim();
+
+        assertArrayEquals(docs, postings.toArray());
+        assertTrue(postings.sizeInBytes() < docs.length * Integer.BYTES);
+    }
+
+    @Test
+    public void testCursorSkipsBlocks() {
+        PostingList postings = new PostingList();
+        IntStream.range(0, 10_000).forEach(i -> postings.add(i * 3));
+        PostingList.Cursor cursor = postings.cursor();
+
+        assertEquals(0, cursor.advance(0));
+        assertEquals(3000, cursor.advance(2999));
+        assertEquals(3000, cursor.advance(3000));
+        assertEquals(29_997, cursor.advance(29_997));
+        assertEquals(PostingList.NO_MORE_DOCS, cursor.advance(29_998));
+    }
+
+    @Test
+    public void testAllTermsMustMatchAndNameAndShortBooksRankHigher() {
+        index.put(1, "Толстой и его время", "Иван Петров");
+        index.put(2, "Война и мир", "Лев Толстой");
+        index.put(3, "Анна Каренина", "Лев Толстой");
+
+        assertEquals(List.of(1L, 3L, 2L), ids(index.search(List.of("толстой"), 10)));
+        assertEquals(List.of(2L), ids(index.search(List.of("толстой", "мир"), 10)));
+        assertEquals(0, index.search(List.of("толстой", "достоевский"), 10).getTotal());
+    }
+
+    @Test
+    public void testLimitKeepsBestAndReportsTotal() {
+        IntStream.rangeClosed(1, 50).forEach(id -> index.put(id, "Книга " + id, "Автор"));
+        index.put(51, "Книга", "Автор");
+
+        SearchBooksResponse found = index.search(List.of("книга"), 3);
+
+        assertEquals(51, found.getTotal());
+        assertEquals(List.of(51L, 1L, 2L), ids(found));
+    }
+
+    @Test
+    public void testIntersectionAcrossFieldsAndBlocks() {
+        IntStream.range(0, 5000).forEach(id -> index.put(id, "Книга " + id, "Автор " + id % 10));
+
+        assertEquals(500, index.search(List.of("книга", "3"), 10).getTotal());
+        assertEquals(List.of(3L), ids(index.search(List.of("книга", "3"), 1)));
+        assertEquals(1, index.search(List.of("3", "автор", "4093"), 10).getTotal());
+    }
+
+    @Test
+    public void testUpdateAndRemoveSurviveCompaction() {
+        IntStream.rangeClosed(1, 3000).forEach(id -> index.put(id, "Книга " + id, "Автор"));
+        IntStream.rangeClosed(1, 2000).forEach(id -> index.remove(id));
+        index.put(2500, "Новое название", "Автор");
+
+        assertTrue(index.needsCompaction());
+        InvertedIndex compacted = index.compacted();
+
+        assertEquals(1000, compacted.books());
+        assertEquals(999, compacted.search(List.of("книга"), 10).getTotal());
+        assertEquals(List.of(2500L), ids(compacted.search(List.of("новое"), 10)));
+        assertEquals(0, compacted.search(List.of("1"), 10).getTotal());
+    }
+
+    private static List<Long> ids(SearchBooksResponse response) {
+        return response.getBooks().stream().map(BookShortResponse::getId).toList();
+    }
+}
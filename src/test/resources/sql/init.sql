@@ -1,10 +1,13 @@
-TRUNCATE book, category RESTART IDENTITY;
-INSERT INTO category(name) VALUES
-    ('music'),
-    ('sport');
+TRUNCATE book, category, category_book_count_delta RESTART IDENTITY;
+INSERT INTO category(id, name, book_count) VALUES
+    (1, 'music', 2),
+    (2, 'sport', 2);
 
-INSERT INTO book(name, author, category_id) VALUES
-    ('some book about music 1', 'some musician 1', 1),
-    ('some book about music 2', 'some musician 2', 1),
-    ('some book about sport 1', 'some sportsman 1', 2),
-    ('some book about sport 2', 'some sportsman 2', 2);
\ No newline at end of file
+INSERT INTO book(id, name, author, category_id) VALUES
+    (1, 'some book about music 1', 'some musician 1', 1),
+    (2, 'some book about music 2', 'some musician 2', 1),
+    (3, 'some book about sport 1', 'some sportsman 1', 2),
+    (4, 'some book about sport 2', 'some sportsman 2', 2);
+
+SELECT setval('category_seq', 3, false);
+SELECT setval('book_seq', 5, false);
\ No newline at end of file